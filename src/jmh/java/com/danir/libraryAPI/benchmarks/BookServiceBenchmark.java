@@ -0,0 +1,72 @@
+package com.danir.libraryAPI.benchmarks;
+
+import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.Person;
+import com.danir.libraryAPI.services.BookService;
+import com.danir.libraryAPI.util.BookMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request BookService paths used by the book and person pages.
+ * Books are synthetic but shaped like production rows: a mix of returned, recently borrowed,
+ * overdue and already paid loans.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+
+    private BookService bookService;
+
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        // none of the measured methods touch the repositories or other services
+        bookService = new BookService(null, null, new BookMapper(), null, null, null, null, null, null);
+
+        SplittableRandom random = new SplittableRandom(42);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Person person = new Person("John Doe", 1990, "john@example.com", "secret");
+        person.setPersonId(1);
+
+        books = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Book book = new Book("Book title number " + i, 1800 + random.nextInt(225), "Author " + random.nextInt(200));
+            book.setBookId(i + 1);
+            if (random.nextInt(4) != 0) {
+                book.setPerson(person);
+                book.setBorrowedDate(now.minusDays(random.nextInt(60)).minusHours(random.nextInt(24)));
+                book.setIsDebtPaid(random.nextInt(5) == 0);
+            }
+            books.add(book);
+        }
+    }
+
+    @Benchmark
+    public void isOverdue(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(bookService.isOverdue(book));
+        }
+    }
+
+    @Benchmark
+    public void convertToBookDTO(Blackhole blackhole) {
+        for (Book book : books) {
+            BookDTO bookDTO = bookService.convertToBookDTO(book);
+            blackhole.consume(bookDTO);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.danir.libraryAPI.benchmarks;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load test used to compare the platform thread pool with library.virtual-threads.enabled=true.
+ * Start the application once in each mode and run against the same endpoint:
+ * <pre>
+ * java -cp target/test-classes com.danir.libraryAPI.benchmarks.LoadTest \
+ *      http://localhost:8080 /api/books/1 user@example.com password 400 30
+ * </pre>
+ * Arguments: base url, path, username, password, concurrent clients, duration in seconds.
+ * Prints throughput, error count and latency percentiles.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String path = args.length > 1 ? args[1] : "/api/books/1";
+        String username = args.length > 2 ? args[2] : "user@example.com";
+        String password = args.length > 3 ? args[3] : "password";
+        int clients = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 30;
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        login(httpClient, baseUrl, username, password);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(executor.submit(() -> runClient(httpClient, request, deadline, errors)));
+        }
+
+        List<long[]> latencies = new ArrayList<>();
+        long completed = 0;
+        for (Future<long[]> result : results) {
+            long[] clientLatencies = result.get();
+            latencies.add(clientLatencies);
+            completed += clientLatencies.length;
+        }
+        executor.shutdown();
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d clients, %d s: %d requests, %.1f req/s, %d errors%n",
+                clients, seconds, completed, completed / (double) seconds, errors.get());
+        if (all.length > 0) {
+            System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static long[] runClient(HttpClient httpClient, HttpRequest request, long deadline, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < deadline) {
+            long startedAt = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - startedAt;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    // form login; the session cookie is kept by the client's cookie manager
+    private static void login(HttpClient httpClient, String baseUrl, String username, String password) throws Exception {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpRequest loginRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpResponse<Void> response = httpClient.send(loginRequest, HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("Login failed with status " + response.statusCode() + " " + location);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
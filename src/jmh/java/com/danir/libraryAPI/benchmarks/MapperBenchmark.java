@@ -0,0 +1,107 @@
+package com.danir.libraryAPI.benchmarks;
+
+import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.PersonDTO;
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.Person;
+import com.danir.libraryAPI.models.Role;
+import com.danir.libraryAPI.util.BookMapper;
+import com.danir.libraryAPI.util.PersonMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-written mappers with the reflective ModelMapper setup they replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private PersonMapper personMapper;
+
+    private Book book;
+    private BookDTO bookDTO;
+    private PersonDTO personDTO;
+
+    @Setup
+    public void setUp() {
+        modelMapper = legacyModelMapper();
+        bookMapper = new BookMapper();
+        personMapper = new PersonMapper();
+
+        Person borrower = new Person("John Doe", 1990, "john@example.com", "secret");
+        Person reserver = new Person("Jane Doe", 1992, "jane@example.com", "secret");
+
+        book = new Book("Crime and Punishment", 1866, "Fyodor Dostoevsky");
+        book.setBookId(42);
+        book.setPerson(borrower);
+        book.setReservedBy(reserver);
+        book.setBorrowedDate(OffsetDateTime.now().minusDays(3));
+
+        bookDTO = bookMapper.toBookDTO(book);
+
+        personDTO = new PersonDTO();
+        personDTO.setFullName("John Doe");
+        personDTO.setYearOfBirth(1990);
+        personDTO.setEmail("john@example.com");
+        personDTO.setPassword("secret");
+        personDTO.setRoles(Set.of(Role.ROLE_USER));
+    }
+
+    @Benchmark
+    public BookDTO bookToDto_modelMapper() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookToDto_bookMapper() {
+        return bookMapper.toBookDTO(book);
+    }
+
+    @Benchmark
+    public Book dtoToBook_modelMapper() {
+        return modelMapper.map(bookDTO, Book.class);
+    }
+
+    @Benchmark
+    public Book dtoToBook_bookMapper() {
+        return bookMapper.toBook(bookDTO);
+    }
+
+    @Benchmark
+    public Person dtoToPerson_modelMapper() {
+        return modelMapper.map(personDTO, Person.class);
+    }
+
+    @Benchmark
+    public Person dtoToPerson_personMapper() {
+        return personMapper.toPerson(personDTO);
+    }
+
+    // the configuration the application used before the hand-written mappers
+    private static ModelMapper legacyModelMapper() {
+        ModelMapper modelMapper = new ModelMapper();
+
+        modelMapper.createTypeMap(Book.class, BookDTO.class)
+                .addMappings(mapper -> mapper.map(src -> src.getPerson().getFullName(), BookDTO::setPerson_name))
+                .addMappings(mapper -> mapper.map(src -> src.getReservedBy().getFullName(), BookDTO::setReserved_by_name));
+
+        modelMapper.createTypeMap(BookDTO.class, Book.class)
+                .addMappings(mapper -> {
+                    mapper.skip(Book::setPerson);
+                    mapper.skip(Book::setReservedBy);
+                });
+
+        return modelMapper;
+    }
+}
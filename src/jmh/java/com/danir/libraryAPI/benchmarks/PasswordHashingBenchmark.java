@@ -0,0 +1,56 @@
+package com.danir.libraryAPI.benchmarks;
+
+import com.danir.libraryAPI.security.BoundedPasswordEncoder;
+import com.danir.libraryAPI.security.PasswordHashingProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashes per second on one core (a single benchmark thread, without the hashing pool),
+ * for the algorithms and costs of library.security.password-hashing.
+ * Multiplied by library.security.password-hashing.pool-size it gives the registrations and logins
+ * per second the application can take before requests queue up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+
+    @Param({"bcrypt:10", "bcrypt:12", "argon2:16384", "argon2:65536"})
+    private String algorithm;
+
+    private PasswordEncoder passwordEncoder;
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() {
+        // algorithm:cost, the cost is the bcrypt strength or the argon2 memory in KB
+        String[] parts = algorithm.split(":");
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setAlgorithm(parts[0]);
+        if (BoundedPasswordEncoder.BCRYPT.equals(parts[0])) {
+            properties.setBcryptStrength(Integer.parseInt(parts[1]));
+        } else {
+            properties.getArgon2().setMemoryKb(Integer.parseInt(parts[1]));
+        }
+
+        passwordEncoder = BoundedPasswordEncoder.createDelegate(properties);
+        encodedPassword = passwordEncoder.encode("correct horse battery staple");
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode("correct horse battery staple");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches("correct horse battery staple", encodedPassword);
+    }
+}
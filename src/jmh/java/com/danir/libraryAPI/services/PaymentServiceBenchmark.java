@@ -0,0 +1,34 @@
+package com.danir.libraryAPI.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fee calculation used for every payment intent and confirmation.
+ * Lives in the services package because calculateAmount is package-private.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentServiceBenchmark {
+
+    private PaymentService paymentService;
+
+    @Setup
+    public void setUp() {
+        paymentService = new PaymentService(null, null, null, null, null, null, null);
+    }
+
+    // days held 0..59 covers both the flat and the overdue rate
+    @Benchmark
+    public void calculateAmount(Blackhole blackhole) {
+        for (long daysHeld = 0; daysHeld < 60; daysHeld++) {
+            blackhole.consume(paymentService.calculateAmount(daysHeld));
+        }
+    }
+}
@@ -2,8 +2,6 @@ package com.danir.libraryAPI;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
-import org.modelmapper.ModelMapper;
 
 @SpringBootApplication
 public class LibraryAPIApplication {
@@ -11,9 +9,4 @@ public class LibraryAPIApplication {
     public static void main(String[] args) {
         SpringApplication.run(LibraryAPIApplication.class, args);
     }
-
-    @Bean
-    public ModelMapper modelMapper(){
-        return new ModelMapper();
-    }
 }
\ No newline at end of file
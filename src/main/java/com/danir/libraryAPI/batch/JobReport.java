@@ -0,0 +1,25 @@
+package com.danir.libraryAPI.batch;
+
+import com.danir.libraryAPI.models.JobPartition;
+
+import java.util.List;
+
+/**
+ * Outcome of one partitioned job run, with the timing of every partition.
+ */
+public record JobReport(String jobName,
+                        boolean resumed,
+                        List<PartitionReport> partitions,
+                        long rowsUpdated,
+                        int failedPartitions,
+                        long durationMs) {
+
+    public record PartitionReport(int fromId, int toId, JobPartition.Status status, int rowsUpdated, long durationMs) {
+
+        static PartitionReport of(JobPartition partition) {
+            return new PartitionReport(partition.getFromId(), partition.getToId(), partition.getStatus(),
+                    partition.getRowsUpdated() == null ? 0 : partition.getRowsUpdated(),
+                    partition.getDurationMs() == null ? 0 : partition.getDurationMs());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.danir.libraryAPI.batch;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Work of a partitioned job for the book id range [fromId, toId].
+ * Runs inside the partition's transaction and returns the number of changed rows.
+ * runStartedAt is the start of the run the partition belongs to, stored in job_partition, so a partition
+ * resumed after a restart uses the same reference time as the partitions that completed before.
+ */
+@FunctionalInterface
+public interface PartitionWork {
+
+    int process(int fromId, int toId, OffsetDateTime runStartedAt);
+}
@@ -0,0 +1,207 @@
+package com.danir.libraryAPI.batch;
+
+import com.danir.libraryAPI.models.JobPartition;
+import com.danir.libraryAPI.repositories.BookRepository;
+import com.danir.libraryAPI.repositories.JobPartitionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs catalog-wide jobs over the book id space split into fixed-size ranges.
+ * Ranges are processed in parallel on a bounded ForkJoin pool, each in its own short transaction
+ * that also marks its job_partition row as completed, so a partition's work and its progress commit together.
+ * If the application stops mid-run, the run is continued by {@link #resume} (called on startup) or by the next run
+ * of the same job within {@link #RESUME_WINDOW} of its start: only the partitions that did not complete are processed,
+ * with the run's original start time, and partitions that failed in that run are retried once more.
+ * Older leftovers, and runs that finished with failed partitions, never replace the plan:
+ * the next run plans all ranges again, so failed ranges and books added since are covered.
+ */
+@Component
+@Slf4j
+public class PartitionedJobRunner {
+
+    // a nightly job's next regular run plans from scratch anyway
+    static final Duration RESUME_WINDOW = Duration.ofHours(24);
+
+    private final JobPartitionRepository jobPartitionRepository;
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+
+    public PartitionedJobRunner(JobPartitionRepository jobPartitionRepository,
+                                BookRepository bookRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${library.jobs.parallelism:4}") int parallelism,
+                                @Value("${library.jobs.partition-size:5000}") int partitionSize) {
+        if (parallelism <= 0 || partitionSize <= 0) {
+            throw new IllegalArgumentException("Parallelism and partition size must be positive");
+        }
+        this.jobPartitionRepository = jobPartitionRepository;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        // every worker holds a database connection while it runs, keep this below the Hikari pool size
+        this.pool = new ForkJoinPool(parallelism);
+        this.partitionSize = partitionSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public JobReport run(String jobName, PartitionWork work) {
+        long startedAt = System.nanoTime();
+        return resume(jobName, work)
+                .orElseGet(() -> execute(jobName, planPartitions(jobName), false, work, startedAt));
+    }
+
+    /**
+     * Continues an interrupted run of the job, if there is one; never plans a new run.
+     */
+    public Optional<JobReport> resume(String jobName, PartitionWork work) {
+        long startedAt = System.nanoTime();
+        List<JobPartition> partitions = unfinishedPartitionsOfInterruptedRun(jobName);
+        if (partitions.isEmpty()) {
+            return Optional.empty();
+        }
+        log.warn("Resuming job '{}' started at {}: {} unfinished partitions",
+                jobName, partitions.get(0).getRunStartedAt(), partitions.size());
+        return Optional.of(execute(jobName, partitions, true, work, startedAt));
+    }
+
+    private JobReport execute(String jobName, List<JobPartition> partitions, boolean resumed, PartitionWork work,
+                              long startedAt) {
+        Timer partitionTimer = Timer.builder("library.job.partition")
+                .description("Processing time of one partition of a partitioned job")
+                .tag("job", jobName)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        List<Callable<JobPartition>> tasks = new ArrayList<>(partitions.size());
+        for (JobPartition partition : partitions) {
+            tasks.add(() -> process(partition, work, partitionTimer));
+        }
+
+        List<JobReport.PartitionReport> partitionReports = new ArrayList<>(partitions.size());
+        long rowsUpdated = 0;
+        int failed = 0;
+        try {
+            for (Future<JobPartition> future : pool.invokeAll(tasks)) {
+                JobReport.PartitionReport partitionReport = JobReport.PartitionReport.of(future.get());
+                partitionReports.add(partitionReport);
+                rowsUpdated += partitionReport.rowsUpdated();
+                if (partitionReport.status() != JobPartition.Status.COMPLETED) {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Job '" + jobName + "' was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Job '" + jobName + "' failed", e.getCause());
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        log.info("Job '{}' finished: {} partitions ({} failed), {} rows updated in {} ms",
+                jobName, partitionReports.size(), failed, rowsUpdated, durationMs);
+        return new JobReport(jobName, resumed, partitionReports, rowsUpdated, failed, durationMs);
+    }
+
+    /**
+     * Partitions to resume: the not completed partitions of a run started within the resume window that was
+     * interrupted, i.e. that still has pending partitions. Empty if there is nothing to resume.
+     */
+    private List<JobPartition> unfinishedPartitionsOfInterruptedRun(String jobName) {
+        OffsetDateTime resumableAfter = OffsetDateTime.now().minus(RESUME_WINDOW);
+        List<JobPartition> unfinished = jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(jobName,
+                        JobPartition.Status.COMPLETED).stream()
+                .filter(partition -> partition.getRunStartedAt().isAfter(resumableAfter))
+                .toList();
+        boolean interrupted = unfinished.stream()
+                .anyMatch(partition -> partition.getStatus() == JobPartition.Status.PENDING);
+        if (!interrupted && !unfinished.isEmpty()) {
+            log.info("Job '{}' last finished with {} failed partitions, nothing to resume", jobName, unfinished.size());
+        }
+        return interrupted ? unfinished : List.of();
+    }
+
+    // partitions of earlier runs, including failed and stale ones, are replaced by the new plan
+    private List<JobPartition> planPartitions(String jobName) {
+        // timestamptz keeps microseconds; a resumed partition must see exactly the same start time
+        OffsetDateTime runStartedAt = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return transactionTemplate.execute(status -> {
+            jobPartitionRepository.deleteByJobName(jobName);
+
+            Integer minId = bookRepository.findMinBookId();
+            Integer maxId = bookRepository.findMaxBookId();
+            if (minId == null || maxId == null) {
+                log.info("No books to process for job '{}'", jobName);
+                return List.of();
+            }
+
+            List<JobPartition> partitions = new ArrayList<>();
+            for (long fromId = minId; fromId <= maxId; fromId += partitionSize) {
+                int toId = (int) Math.min(fromId + partitionSize - 1, maxId);
+                partitions.add(new JobPartition(jobName, runStartedAt, (int) fromId, toId));
+            }
+            log.info("Job '{}' planned {} partitions over book ids {}..{}", jobName, partitions.size(), minId, maxId);
+            return jobPartitionRepository.saveAll(partitions);
+        });
+    }
+
+    private JobPartition process(JobPartition partition, PartitionWork work, Timer partitionTimer) {
+        long startedAt = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int rowsUpdated = work.process(partition.getFromId(), partition.getToId(), partition.getRunStartedAt());
+                finish(partition, JobPartition.Status.COMPLETED, rowsUpdated, startedAt);
+                jobPartitionRepository.save(partition);
+            });
+        } catch (RuntimeException e) {
+            log.error("Partition {}..{} of job '{}' failed: {}",
+                    partition.getFromId(), partition.getToId(), partition.getJobName(), e.getMessage());
+            finish(partition, JobPartition.Status.FAILED, 0, startedAt);
+            try {
+                transactionTemplate.executeWithoutResult(status -> jobPartitionRepository.save(partition));
+            } catch (RuntimeException saveError) {
+                // the row stays PENDING and is retried on the next run as well
+                log.error("Could not record failure of partition {}..{}: {}",
+                        partition.getFromId(), partition.getToId(), saveError.getMessage());
+            }
+        }
+
+        partitionTimer.record(partition.getDurationMs(), TimeUnit.MILLISECONDS);
+        log.debug("Partition {}..{} of job '{}': {} rows in {} ms", partition.getFromId(), partition.getToId(),
+                partition.getJobName(), partition.getRowsUpdated(), partition.getDurationMs());
+        return partition;
+    }
+
+    private static void finish(JobPartition partition, JobPartition.Status status, int rowsUpdated, long startedAt) {
+        partition.setStatus(status);
+        partition.setRowsUpdated(rowsUpdated);
+        partition.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        partition.setFinishedAt(OffsetDateTime.now());
+    }
+}
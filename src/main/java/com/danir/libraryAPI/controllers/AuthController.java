@@ -4,9 +4,9 @@ import com.danir.libraryAPI.dto.PersonDTO;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.models.Role;
 import com.danir.libraryAPI.services.PeopleService;
+import com.danir.libraryAPI.util.PersonMapper;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -22,11 +22,11 @@ import java.util.Optional;
 public class AuthController {
 
     private final PeopleService peopleService;
-    private final ModelMapper modelMapper;
+    private final PersonMapper personMapper;
 
-    public AuthController(PeopleService peopleService, ModelMapper modelMapper) {
+    public AuthController(PeopleService peopleService, PersonMapper personMapper) {
         this.peopleService = peopleService;
-        this.modelMapper = modelMapper;
+        this.personMapper = personMapper;
     }
 
     @GetMapping("/login")
@@ -90,6 +90,6 @@ public class AuthController {
     }
 
     private Person convertToPerson(PersonDTO personDTO){
-        return modelMapper.map(personDTO, Person.class);
+        return personMapper.toPerson(personDTO);
     }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.danir.libraryAPI.controllers;
 
+import com.danir.libraryAPI.dto.BookCursor;
 import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.BookPageDTO;
+import com.danir.libraryAPI.dto.CurrentUserDTO;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.services.BookService;
@@ -9,9 +12,7 @@ import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -19,7 +20,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.security.Principal;
-import java.util.List;
 
 @Controller
 @RequestMapping("/books")
@@ -35,38 +35,32 @@ public class BooksController {
     }
 
     @GetMapping
-    public String index(@RequestParam(required = false, defaultValue = "0") int page,
+    public String index(@RequestParam(required = false) String after,
                         @RequestParam(required = false, defaultValue = "20") int size,
                         @RequestParam(required = false, defaultValue = "false") boolean onlyAvailable,
                         Model model, Principal principal) {
-        log.info("Accessing book index page. Page: {}, Size: {}, Only Available: {}", page, size, onlyAvailable);
-
-        String username = principal.getName();
-        Person person = peopleService.findByUsername(username);
-        boolean isAdmin = hasRole();
-
-        Page<Book> bookPage;
-        if (onlyAvailable) {
-            bookPage = bookService.getAvailableBooks(PageRequest.of(page, size, Sort.by("year")));
-        } else {
-            bookPage = bookService.findAll(PageRequest.of(page, size, Sort.by("year")));
+        log.info("Accessing book index page. After: {}, Size: {}, Only Available: {}", after, size, onlyAvailable);
+
+        CurrentUserDTO currentUser = peopleService.findCurrentUser(principal.getName());
+        boolean isAdmin = currentUser.isAdmin();
+
+        BookCursor cursor;
+        try {
+            cursor = BookCursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            // a stale or edited link, start over on the first page
+            log.warn("Invalid catalog cursor: {}", after);
+            after = null;
+            cursor = BookCursor.START;
         }
 
-        List<Book> bookList = bookPage.getContent();
-
-        List<BookDTO> bookDTOList = bookList.stream()
-                .map(book -> {
-                    BookDTO bookDTO = bookService.convertToBookDTO(book);
-                    bookDTO.setOverdue(bookService.isOverdue(book));
-                    return bookDTO;
-                })
-                .toList();
+        BookPageDTO bookPage = bookService.findCatalogPage(cursor, size, onlyAvailable);
 
-        model.addAttribute("currentUser", person.getPersonId());
+        model.addAttribute("currentUser", currentUser.getPersonId());
         model.addAttribute("isAdmin", isAdmin);
-        model.addAttribute("books", bookDTOList);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", bookPage.getTotalPages());
+        model.addAttribute("books", bookPage.getBooks());
+        model.addAttribute("nextCursor", bookPage.getNextCursor());
+        model.addAttribute("isFirstPage", after == null || after.isBlank());
         model.addAttribute("onlyAvailable", onlyAvailable);
 
         log.info("Book index page loaded successfully.");
@@ -79,11 +73,10 @@ public class BooksController {
 
         BookDTO bookDTO = bookService.getBookDetails(id);
 
-        String username = principal.getName();
-        Person person = peopleService.findByUsername(username);
-        boolean isAdmin = hasRole();
+        CurrentUserDTO currentUser = peopleService.findCurrentUser(principal.getName());
+        boolean isAdmin = currentUser.isAdmin();
 
-        model.addAttribute("currentUser", person);
+        model.addAttribute("currentUser", currentUser);
         model.addAttribute("book", bookDTO);
         model.addAttribute("isAdmin", isAdmin);
         model.addAttribute("people", isAdmin ? peopleService.findAll() : null);
@@ -196,12 +189,18 @@ public class BooksController {
     }
 
     @GetMapping("/result")
-    public String searchResult(@RequestParam("name") String name, Model model) {
-        log.info("Searching for books with title containing: {}", name);
-        List<Book> books = bookService.searchBooksByTitle(name);
-        model.addAttribute("books", books);
-
-        log.info("Found {} books matching the search criteria.", books.size());
+    public String searchResult(@RequestParam("name") String name,
+                               @RequestParam(required = false, defaultValue = "0") int page,
+                               @RequestParam(required = false, defaultValue = "20") int size,
+                               Model model) {
+        log.info("Searching for books with title or author containing: {}", name);
+        Page<Book> books = bookService.searchBooks(name, PageRequest.of(Math.max(page, 0), BookService.clampPageSize(size)));
+        model.addAttribute("books", books.getContent());
+        model.addAttribute("name", name);
+        model.addAttribute("currentPage", books.getNumber());
+        model.addAttribute("totalPages", books.getTotalPages());
+
+        log.info("Found {} books matching the search criteria.", books.getTotalElements());
         return "book/resultsOfSearching";
     }
 
@@ -228,10 +227,4 @@ public class BooksController {
         model.addAttribute("message", "Reservation cancelled successfully");
         return "redirect:/books/" + bookId;
     }
-
-    protected static boolean hasRole() {
-        return SecurityContextHolder.getContext().getAuthentication()
-                .getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-    }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.danir.libraryAPI.controllers;
 
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Person;
+import com.danir.libraryAPI.payments.PaymentIntentResult;
 import com.danir.libraryAPI.services.BookService;
+import com.danir.libraryAPI.services.DebtLedgerService;
 import com.danir.libraryAPI.services.PaymentService;
 import com.danir.libraryAPI.services.PeopleService;
 import com.danir.libraryAPI.util.PersonDetails;
@@ -15,7 +17,8 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Controller
 @RequestMapping("/payment")
@@ -26,62 +29,63 @@ public class PaymentController {
     private final BookService bookService;
     private final PeopleService peopleService;
     private final StripeConfig stripeConfig;
+    private final DebtLedgerService debtLedgerService;
 
-    public PaymentController(PaymentService paymentService, BookService bookService, PeopleService peopleService, StripeConfig stripeConfig) {
+    public PaymentController(PaymentService paymentService, BookService bookService, PeopleService peopleService, StripeConfig stripeConfig, DebtLedgerService debtLedgerService) {
         this.paymentService = paymentService;
         this.bookService = bookService;
         this.peopleService = peopleService;
         this.stripeConfig = stripeConfig;
+        this.debtLedgerService = debtLedgerService;
     }
 
+    // the servlet thread is released while Stripe creates the intent, the page is rendered when the future completes
     @GetMapping("/{bookId}")
-    public String initiatePayment(@PathVariable("bookId") int bookId, Model model) {
+    public CompletableFuture<String> initiatePayment(@PathVariable("bookId") int bookId, Model model) {
         log.info("Initiating payment for book ID: {}", bookId);
 
-        try {
-            Book book = bookService.findOne(bookId);
-            if (book.getIsDebtPaid()) {
-                log.info("Book ID: {} has no debt to pay.", bookId);
-                model.addAttribute("message", "This book has no debt to pay.");
-                return "book/bookShow";
-            }
-
-            String clientSecret = paymentService.createPaymentIntentForBook(book);
-            addPaymentAttributes(model, clientSecret, bookService.calculateDebt(book));
-
-            log.info("Payment initiated successfully for book ID: {}", bookId);
-            return "payment/payment";
-        } catch (StripeException e) {
-            log.error("Stripe payment failed for book ID: {}", bookId, e);
-            model.addAttribute("error", "Payment failed: " + e.getMessage());
-            return "payment/payment-error";
+        Book book = bookService.findOne(bookId);
+        if (book.getIsDebtPaid()) {
+            log.info("Book ID: {} has no debt to pay.", bookId);
+            model.addAttribute("message", "This book has no debt to pay.");
+            return CompletableFuture.completedFuture("book/bookShow");
         }
+
+        return paymentService.createPaymentIntentForBookAsync(book)
+                .thenApply(paymentIntent -> {
+                    addPaymentAttributes(model, paymentIntent);
+                    model.addAttribute("bookId", bookId);
+                    log.info("Payment initiated successfully for book ID: {}", bookId);
+                    return "payment/payment";
+                })
+                .exceptionally(e -> {
+                    log.error("Stripe payment failed for book ID: {}", bookId, e);
+                    return paymentError(model, e);
+                });
     }
 
     @GetMapping("/all/{id}")
-    public String initiatePaymentForAllBooks(@PathVariable("id") int personId, Model model) {
+    public CompletableFuture<String> initiatePaymentForAllBooks(@PathVariable("id") int personId, Model model) {
         log.info("Initiating payment for all books of person ID: {}", personId);
 
         Person person = peopleService.findOne(personId);
-        try {
-            List<Book> booksWithDebt = person.getBookList().stream().filter(book -> !book.getIsDebtPaid()).toList();
-            if (booksWithDebt.isEmpty()) {
-                log.info("No books with debt found for person ID: {}", personId);
-                model.addAttribute("message", "You don't have any books with debt to pay.");
-                return "book/bookShow";
-            }
-
-            String clientSecret = paymentService.createPaymentIntentForAllBooks(booksWithDebt);
-            addPaymentAttributes(model, clientSecret, bookService.calculateTotalDebt(person));
-            model.addAttribute("person", person);
-
-            log.info("Payment initiated successfully for all books of person ID: {}", personId);
-            return "payment/payment-multiple";
-        } catch (StripeException e) {
-            log.error("Stripe payment failed for all books of person ID: {}", personId, e);
-            model.addAttribute("error", "Payment failed: " + e.getMessage());
-            return "payment/payment-error";
+        if (debtLedgerService.balanceOf(personId) == 0) {
+            log.info("No books with debt found for person ID: {}", personId);
+            model.addAttribute("message", "You don't have any books with debt to pay.");
+            return CompletableFuture.completedFuture("book/bookShow");
         }
+
+        return paymentService.createPaymentIntentForAllBooksAsync(personId)
+                .thenApply(paymentIntent -> {
+                    addPaymentAttributes(model, paymentIntent);
+                    model.addAttribute("person", person);
+                    log.info("Payment initiated successfully for all books of person ID: {}", personId);
+                    return "payment/payment-multiple";
+                })
+                .exceptionally(e -> {
+                    log.error("Stripe payment failed for all books of person ID: {}", personId, e);
+                    return paymentError(model, e);
+                });
     }
 
     @PostMapping("/confirm")
@@ -95,7 +99,7 @@ public class PaymentController {
             log.info("Payment confirmed successfully for book ID: {}", bookId);
             redirectAttributes.addFlashAttribute("message", "Payment successful!");
             return "payment/payment-success";
-        } catch (StripeException e) {
+        } catch (StripeException | IllegalStateException e) {
             log.error("Payment confirmation failed for book ID: {}", bookId, e);
             redirectAttributes.addFlashAttribute("error", "Payment verification failed: " + e.getMessage());
             return "payment/payment-error";
@@ -112,7 +116,7 @@ public class PaymentController {
             log.info("Multiple payments confirmed successfully for person ID: {}", personId);
             redirectAttributes.addFlashAttribute("message", "Payment successful!");
             return "payment/payment-success";
-        } catch (StripeException e) {
+        } catch (StripeException | IllegalStateException e) {
             log.error("Multiple payments confirmation failed for person ID: {}", personId, e);
             redirectAttributes.addFlashAttribute("error", "Payment verification failed: " + e.getMessage());
             return "payment/payment-error";
@@ -130,10 +134,16 @@ public class PaymentController {
         return personDetails.getPerson();
     }
 
-    private void addPaymentAttributes(Model model, String clientSecret, double amount) {
+    private void addPaymentAttributes(Model model, PaymentIntentResult paymentIntent) {
         model.addAttribute("publishableKey", stripeConfig.getPublishableKey());
-        model.addAttribute("clientSecret", clientSecret);
-        model.addAttribute("amount", amount);
+        model.addAttribute("clientSecret", paymentIntent.clientSecret());
+        model.addAttribute("amount", paymentIntent.amount());
         model.addAttribute("currency", "EUR");
     }
-}
\ No newline at end of file
+
+    private static String paymentError(Model model, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        model.addAttribute("error", "Payment failed: " + cause.getMessage());
+        return "payment/payment-error";
+    }
+}
@@ -6,11 +6,12 @@ import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.models.Role;
 import com.danir.libraryAPI.services.BookService;
 import com.danir.libraryAPI.services.BorrowedBookService;
+import com.danir.libraryAPI.services.DebtLedgerService;
 import com.danir.libraryAPI.services.PeopleService;
 import com.danir.libraryAPI.util.PeopleValidator;
+import com.danir.libraryAPI.util.PersonMapper;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -21,8 +22,6 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.security.Principal;
 import java.util.Set;
 
-import static com.danir.libraryAPI.controllers.BooksController.hasRole;
-
 
 @Slf4j
 @Controller
@@ -32,36 +31,38 @@ public class PeopleController {
     private final PeopleService peopleService;
     private final PeopleValidator validator;
     private final BorrowedBookService borrowedBookService;
-    private final ModelMapper modelMapper;
+    private final PersonMapper personMapper;
     private final BookService bookService;
+    private final DebtLedgerService debtLedgerService;
 
-    public PeopleController(PeopleService peopleService, PeopleValidator validator, BorrowedBookService borrowedBookService, ModelMapper modelMapper, BookService bookService) {
+    public PeopleController(PeopleService peopleService, PeopleValidator validator, BorrowedBookService borrowedBookService, PersonMapper personMapper, BookService bookService, DebtLedgerService debtLedgerService) {
         this.peopleService = peopleService;
         this.validator = validator;
         this.borrowedBookService = borrowedBookService;
-        this.modelMapper = modelMapper;
+        this.personMapper = personMapper;
         this.bookService = bookService;
+        this.debtLedgerService = debtLedgerService;
     }
 
     @GetMapping("")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public String index(Model model, Principal principal){
         String userName = principal.getName();
-        Person person = peopleService.findByUsername(userName);
 
         model.addAttribute("people", peopleService.findAll());
-        model.addAttribute("currentUser", person.getPersonId());
+        model.addAttribute("currentUser", peopleService.findCurrentUser(userName).getPersonId());
 
         log.info("Admin {} accessed the people index page.", userName);
         return "people/peopleIndex";
     }
 
     @GetMapping("/{id}")
-    public String show(@PathVariable("id") int id, Model model) {
-        boolean isAdmin = hasRole();
+    public String show(@PathVariable("id") int id, Model model, Principal principal) {
+        // same source as the book pages, so both agree right after a role change
+        boolean isAdmin = peopleService.findCurrentUser(principal.getName()).isAdmin();
         Person person = peopleService.findOne(id);
-        person.getBookList().forEach(book -> book.setDebt(bookService.calculateDebt(book)));
-        double totalDebt = bookService.calculateTotalDebt(person);
+        // per-loan debts are kept up to date on the books, the total is one ledger row
+        double totalDebt = debtLedgerService.balanceOf(id);
         Set<BorrowedBook> borrowedBooks = borrowedBookService.findByPerson(person);
 
         model.addAttribute("isAdmin", isAdmin);
@@ -186,10 +187,10 @@ public class PeopleController {
     }
 
     private Person convertToPerson(PersonDTO personDTO){
-        return modelMapper.map(personDTO, Person.class);
+        return personMapper.toPerson(personDTO);
     }
 
     private PersonDTO convertToPersonDTO(Person person){
-        return modelMapper.map(person, PersonDTO.class);
+        return personMapper.toPersonDTO(person);
     }
 }
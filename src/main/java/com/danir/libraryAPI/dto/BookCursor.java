@@ -0,0 +1,32 @@
+package com.danir.libraryAPI.dto;
+
+/**
+ * Keyset pagination cursor over the catalog ordering (year, book_id).
+ * Serialized as "year:bookId" so it can be passed around as a plain request parameter.
+ */
+public record BookCursor(int year, int bookId) {
+
+    public static final BookCursor START = new BookCursor(Integer.MIN_VALUE, 0);
+
+    public static BookCursor parse(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+
+        int separator = cursor.indexOf(':');
+        if (separator <= 0 || separator == cursor.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        try {
+            return new BookCursor(Integer.parseInt(cursor.substring(0, separator)),
+                    Integer.parseInt(cursor.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        return year + ":" + bookId;
+    }
+}
@@ -4,9 +4,13 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class BookDTO {
 
     private int bookId;
@@ -30,4 +34,8 @@ public class BookDTO {
 
     private boolean isOverdue;
 
+    public BookDTO copy() {
+        return new BookDTO(bookId, name, author, year, person_name, reserved_by_name, isOverdue);
+    }
+
 }
@@ -0,0 +1,22 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookOperationDTO {
+
+    private Integer bookId;
+
+    // not needed for release
+    private Integer personId;
+
+    public enum Type {
+        ASSIGN,
+        RELEASE,
+        RESERVE
+    }
+}
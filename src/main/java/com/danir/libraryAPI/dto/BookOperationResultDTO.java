@@ -0,0 +1,28 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookOperationResultDTO {
+
+    private Integer bookId;
+
+    private Integer personId;
+
+    private boolean success;
+
+    // reason of the failure, null on success
+    private String message;
+
+    public static BookOperationResultDTO success(BookOperationDTO operation) {
+        return new BookOperationResultDTO(operation.getBookId(), operation.getPersonId(), true, null);
+    }
+
+    public static BookOperationResultDTO failure(BookOperationDTO operation, String message) {
+        return new BookOperationResultDTO(operation.getBookId(), operation.getPersonId(), false, message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookPageDTO {
+
+    private List<BookDTO> books;
+
+    // cursor of the last book on this page, null when there is no next page
+    private String nextCursor;
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+}
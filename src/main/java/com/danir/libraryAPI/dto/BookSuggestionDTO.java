@@ -0,0 +1,17 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSuggestionDTO {
+
+    private int bookId;
+
+    private String name;
+
+    private String author;
+}
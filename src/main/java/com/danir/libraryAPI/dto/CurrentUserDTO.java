@@ -0,0 +1,25 @@
+package com.danir.libraryAPI.dto;
+
+import com.danir.libraryAPI.models.Role;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+// what page views need to know about the logged in person, cached per username by PeopleService
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CurrentUserDTO {
+
+    private int personId;
+
+    private String fullName;
+
+    private Set<Role> roles;
+
+    public boolean isAdmin() {
+        return roles.contains(Role.ROLE_ADMIN);
+    }
+}
@@ -0,0 +1,24 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// one overdue book of a borrower; rows arrive ordered by borrower so they can be grouped into one digest per person
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueDigestRowDTO {
+
+    private int personId;
+
+    private String email;
+
+    private String fullName;
+
+    private int bookId;
+
+    private String bookName;
+
+    private Double debt;
+}
@@ -0,0 +1,20 @@
+package com.danir.libraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// an overdue book together with the borrower it is sent to, read in one query
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueNoticeDTO {
+
+    private int bookId;
+
+    private String bookName;
+
+    private String email;
+
+    private String fullName;
+}
@@ -0,0 +1,13 @@
+package com.danir.libraryAPI.email;
+
+import java.util.Map;
+
+/**
+ * Outcome of {@link EmailService#sendEmails}: failures are keyed by the position of the email in the sent list.
+ */
+public record EmailBatchResult(int sent, Map<Integer, Exception> failures) {
+
+    public boolean isFailed(int index) {
+        return failures.containsKey(index);
+    }
+}
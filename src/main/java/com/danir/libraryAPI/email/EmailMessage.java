@@ -0,0 +1,4 @@
+package com.danir.libraryAPI.email;
+
+public record EmailMessage(String toEmail, String subject, String text) {
+}
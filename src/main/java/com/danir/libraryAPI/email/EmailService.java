@@ -1,37 +1,117 @@
 package com.danir.libraryAPI.email;
 
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Sends notification emails. A batch is split into chunks of messages-per-connection emails and every chunk
+ * is sent by one {@link JavaMailSender#send(SimpleMailMessage...)} call, i.e. over one SMTP connection
+ * with one TLS handshake. At most max-connections chunks are sent at the same time across all callers.
+ */
 @Service
 @Slf4j
 public class EmailService {
 
-    @Autowired
-    private JavaMailSender mailSender;
+    private final JavaMailSender mailSender;
+    private final LibraryMetrics libraryMetrics;
+    private final String fromEmail;
+    private final int messagesPerConnection;
+    private final Semaphore connections;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    public EmailService(JavaMailSender mailSender,
+                        LibraryMetrics libraryMetrics,
+                        @Value("${spring.mail.username}") String fromEmail,
+                        @Value("${library.mail.max-connections:4}") int maxConnections,
+                        @Value("${library.mail.messages-per-connection:50}") int messagesPerConnection) {
+        if (maxConnections <= 0 || messagesPerConnection <= 0) {
+            throw new IllegalArgumentException("Connection limits must be positive");
+        }
+        this.mailSender = mailSender;
+        this.libraryMetrics = libraryMetrics;
+        this.fromEmail = fromEmail;
+        this.messagesPerConnection = messagesPerConnection;
+        this.connections = new Semaphore(maxConnections, true);
+    }
 
     public void sendEmail(String toEmail, String subject, String message) {
-        try {
-            SimpleMailMessage mailMessage = new SimpleMailMessage();
-            mailMessage.setFrom(fromEmail);
-            mailMessage.setTo(toEmail);
-            mailMessage.setSubject(subject);
-            mailMessage.setText(message);
+        sendEmails(List.of(new EmailMessage(toEmail, subject, message)));
+    }
 
-            mailSender.send(mailMessage);
+    public EmailBatchResult sendEmails(List<EmailMessage> emails) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        for (int from = 0; from < emails.size(); from += messagesPerConnection) {
+            int to = Math.min(from + messagesPerConnection, emails.size());
+            sendOverOneConnection(emails, from, to, failures);
+        }
 
-            log.info("✅ Email was sent successfully");
-        } catch (Exception e) {
-            log.error("❌ Error during sending email: {}", e.getMessage());
+        int sent = emails.size() - failures.size();
+        libraryMetrics.recordEmailsSent(sent);
+        libraryMetrics.recordEmailsFailed(failures.size());
+        if (failures.isEmpty()) {
+            log.info("✅ {} emails were sent successfully", sent);
+        } else {
+            log.error("❌ {} of {} emails could not be sent: {}", failures.size(), emails.size(),
+                    failures.values().iterator().next().getMessage());
         }
+        return new EmailBatchResult(sent, failures);
     }
-}
 
+    private void sendOverOneConnection(List<EmailMessage> emails, int from, int to, Map<Integer, Exception> failures) {
+        SimpleMailMessage[] mailMessages = new SimpleMailMessage[to - from];
+        Map<Object, Integer> positions = new IdentityHashMap<>();
+        for (int i = from; i < to; i++) {
+            SimpleMailMessage mailMessage = toMailMessage(emails.get(i));
+            mailMessages[i - from] = mailMessage;
+            positions.put(mailMessage, i);
+        }
+
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            positions.values().forEach(position -> failures.put(position, e));
+            return;
+        }
+
+        try {
+            mailSender.send(mailMessages);
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                positions.values().forEach(position -> failures.put(position, e));
+            } else {
+                // only the listed messages failed, the others of the chunk were delivered
+                e.getFailedMessages().forEach((failedMessage, error) -> {
+                    Integer position = positions.get(failedMessage);
+                    if (position != null) {
+                        failures.put(position, error);
+                    }
+                });
+            }
+        } catch (MailException e) {
+            positions.values().forEach(position -> failures.put(position, e));
+        } finally {
+            connections.release();
+        }
+    }
+
+    private SimpleMailMessage toMailMessage(EmailMessage email) {
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom(fromEmail);
+        mailMessage.setTo(email.toEmail());
+        mailMessage.setSubject(email.subject());
+        mailMessage.setText(email.text());
+        return mailMessage;
+    }
+}
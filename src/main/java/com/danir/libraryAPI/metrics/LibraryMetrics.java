@@ -0,0 +1,158 @@
+package com.danir.libraryAPI.metrics;
+
+import com.danir.libraryAPI.repositories.BookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Business metrics of the library, exported through /actuator/prometheus.
+ * The book gauges are refreshed on a schedule, so a Prometheus scrape never runs COUNT queries itself.
+ */
+@Component
+@Slf4j
+public class LibraryMetrics {
+
+    private final BookRepository bookRepository;
+
+    private final Counter reservations;
+    private final Counter releases;
+    private final Counter notificationsPublished;
+    private final Counter notificationsRetried;
+    private final Counter notificationsDeadLettered;
+    private final Counter emailsSent;
+    private final Counter emailsFailed;
+    private final Counter debtsReopened;
+    private final Timer notificationLatency;
+    private final Timer notificationBatchHandling;
+
+    private final AtomicLong borrowedBooks = new AtomicLong();
+    private final AtomicLong overdueBooks = new AtomicLong();
+    private final AtomicLong availableBooks = new AtomicLong();
+    private final AtomicLong notificationBacklog = new AtomicLong();
+    private final AtomicLong notificationConsumers = new AtomicLong();
+
+    public LibraryMetrics(MeterRegistry meterRegistry, BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+
+        reservations = Counter.builder("library.books.reservations")
+                .description("Books reserved by readers")
+                .register(meterRegistry);
+        releases = Counter.builder("library.books.releases")
+                .description("Books returned to the library")
+                .register(meterRegistry);
+        notificationsPublished = Counter.builder("library.notifications.published")
+                .description("Notification messages published to RabbitMQ")
+                .register(meterRegistry);
+        notificationsRetried = Counter.builder("library.notifications.retried")
+                .description("Notifications parked in a retry queue after a failed email")
+                .register(meterRegistry);
+        notificationsDeadLettered = Counter.builder("library.notifications.dead.lettered")
+                .description("Notifications moved to the dead-letter queue after the last attempt")
+                .register(meterRegistry);
+        emailsSent = Counter.builder("library.emails")
+                .description("Notification emails handed to the mail server")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        debtsReopened = Counter.builder("library.payments.debts.reopened")
+                .description("Paid debts reopened because the book was not returned within 24 hours after payment")
+                .register(meterRegistry);
+        emailsFailed = Counter.builder("library.emails")
+                .description("Notification emails handed to the mail server")
+                .tag("result", "failed")
+                .register(meterRegistry);
+
+        notificationLatency = Timer.builder("library.notifications.latency")
+                .description("Time from publishing a notification until a consumer picks it up")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        notificationBatchHandling = Timer.builder("library.notifications.consume")
+                .description("Time a consumer spends on one delivered batch of notifications")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("library.notifications.backlog", notificationBacklog, AtomicLong::get)
+                .description("Messages waiting in the notification queue")
+                .register(meterRegistry);
+        Gauge.builder("library.notifications.consumers", notificationConsumers, AtomicLong::get)
+                .description("Notification consumers requested by the autoscaler")
+                .register(meterRegistry);
+
+        Gauge.builder("library.books", borrowedBooks, AtomicLong::get)
+                .description("Books in the catalog by state")
+                .tag("state", "borrowed")
+                .register(meterRegistry);
+        Gauge.builder("library.books", overdueBooks, AtomicLong::get)
+                .description("Books in the catalog by state")
+                .tag("state", "overdue")
+                .register(meterRegistry);
+        Gauge.builder("library.books", availableBooks, AtomicLong::get)
+                .description("Books in the catalog by state")
+                .tag("state", "available")
+                .register(meterRegistry);
+    }
+
+    public void recordReservations(int count) {
+        reservations.increment(count);
+    }
+
+    public void recordReleases(int count) {
+        releases.increment(count);
+    }
+
+    public void recordNotificationsPublished(int count) {
+        notificationsPublished.increment(count);
+    }
+
+    public void recordNotificationsRetried(int count) {
+        notificationsRetried.increment(count);
+    }
+
+    public void recordNotificationsDeadLettered(int count) {
+        notificationsDeadLettered.increment(count);
+    }
+
+    public void recordEmailsSent(int count) {
+        emailsSent.increment(count);
+    }
+
+    public void recordEmailsFailed(int count) {
+        emailsFailed.increment(count);
+    }
+
+    public void recordDebtsReopened(int count) {
+        debtsReopened.increment(count);
+    }
+
+    public void recordNotificationLatency(long millis) {
+        notificationLatency.record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordNotificationBatchHandled(long nanos) {
+        notificationBatchHandling.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordNotificationBacklog(long messages) {
+        notificationBacklog.set(messages);
+    }
+
+    public void recordNotificationConsumers(int consumers) {
+        notificationConsumers.set(consumers);
+    }
+
+    @Scheduled(fixedDelayString = "${library.metrics.book-gauges-refresh-ms:60000}")
+    public void refreshBookGauges() {
+        borrowedBooks.set(bookRepository.countByPersonIsNotNull());
+        overdueBooks.set(bookRepository.countByPersonIsNotNullAndBorrowedDateBefore(OffsetDateTime.now().minusDays(10)));
+        availableBooks.set(bookRepository.countByPersonIsNullAndReservedByIsNull());
+        log.debug("Book gauges refreshed: {} borrowed, {} overdue, {} available",
+                borrowedBooks.get(), overdueBooks.get(), availableBooks.get());
+    }
+}
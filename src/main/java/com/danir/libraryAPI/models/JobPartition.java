@@ -0,0 +1,61 @@
+package com.danir.libraryAPI.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One book id range of a partitioned job run. Rows of the last run are kept until the next run starts,
+ * unfinished ones (PENDING or FAILED) are picked up again when an interrupted run is resumed.
+ * runStartedAt is also the reference time of the run's work, so resumed partitions use the original cutoff.
+ */
+@Entity
+@Table(name = "job_partition")
+@Data
+public class JobPartition {
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "partition_id", nullable = false)
+    private long partitionId;
+
+    @Column(name = "job_name", nullable = false)
+    private String jobName;
+
+    @Column(name = "run_started_at", nullable = false)
+    private OffsetDateTime runStartedAt;
+
+    @Column(name = "from_id", nullable = false)
+    private int fromId;
+
+    @Column(name = "to_id", nullable = false)
+    private int toId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    @Column(name = "rows_updated")
+    private Integer rowsUpdated;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    public JobPartition() {}
+
+    public JobPartition(String jobName, OffsetDateTime runStartedAt, int fromId, int toId) {
+        this.jobName = jobName;
+        this.runStartedAt = runStartedAt;
+        this.fromId = fromId;
+        this.toId = toId;
+        this.status = Status.PENDING;
+    }
+}
@@ -0,0 +1,47 @@
+package com.danir.libraryAPI.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Notification written in the same transaction as the change it announces and published later by the outbox relay.
+ * The message id is sent as the AMQP message id, so consumers can drop a message that was published twice.
+ */
+@Entity
+@Table(name = "notification_outbox")
+@Data
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "outbox_id", nullable = false)
+    private long outboxId;
+
+    @Column(name = "message_id", nullable = false, unique = true)
+    private String messageId;
+
+    @Column(name = "to_email", nullable = false)
+    private String toEmail;
+
+    @Column(name = "subject", nullable = false)
+    private String subject;
+
+    @Column(name = "message", nullable = false)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    public OutboxMessage() {}
+
+    public OutboxMessage(String toEmail, String subject, String message) {
+        this.messageId = UUID.randomUUID().toString();
+        this.toEmail = toEmail;
+        this.subject = subject;
+        this.message = message;
+        this.createdAt = OffsetDateTime.now();
+    }
+}
@@ -27,6 +27,10 @@ public class Payment {
     @Column(name = "payment_date", nullable = false)
     private OffsetDateTime paymentDate;
 
+    // Stripe intent this payment confirms, unique so a repeated confirmation is not recorded twice
+    @Column(name = "payment_intent_id", unique = true)
+    private String paymentIntentId;
+
     public Payment() {}
 
     public Payment(Person person, String bookTitle, double amount, OffsetDateTime paymentDate) {
@@ -0,0 +1,30 @@
+package com.danir.libraryAPI.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Outstanding debt of one person: the sum of the per-loan accruals (book.debt) of the books the person
+ * still holds and has not paid for. Maintained by {@link com.danir.libraryAPI.services.DebtLedgerService}
+ * whenever a payment or a return changes a loan's debt, and rebuilt after the nightly recalculation.
+ */
+@Entity
+@Table(name = "person_debt")
+@Data
+public class PersonDebt {
+
+    @Id
+    @Column(name = "person_id", nullable = false)
+    private int personId;
+
+    @Column(name = "balance", nullable = false)
+    private double balance;
+
+    @Column(name = "books_with_debt", nullable = false)
+    private int booksWithDebt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
@@ -0,0 +1,37 @@
+package com.danir.libraryAPI.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Message id of a notification the listener has taken on for sending. Shared by all application instances,
+ * so a notification the outbox relay published twice is emailed once, whichever instance receives it.
+ * PENDING while the claiming listener sends the email, SENT once the mail server accepted it.
+ * Maintained by {@link com.danir.libraryAPI.services.ProcessedNotificationService}.
+ */
+@Entity
+@Table(name = "processed_notification")
+@Data
+public class ProcessedNotification {
+
+    public enum Status {
+        PENDING, SENT
+    }
+
+    @Id
+    @Column(name = "message_id", nullable = false)
+    private String messageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    @Column(name = "claimed_at")
+    private OffsetDateTime claimedAt;
+
+    // time of the last change, the purge goes by it
+    @Column(name = "processed_at", nullable = false)
+    private OffsetDateTime processedAt;
+}
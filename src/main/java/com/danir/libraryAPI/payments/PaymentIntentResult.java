@@ -0,0 +1,5 @@
+package com.danir.libraryAPI.payments;
+
+// the created intent as the payment page needs it
+public record PaymentIntentResult(String paymentIntentId, String clientSecret, double amount) {
+}
@@ -0,0 +1,51 @@
+package com.danir.libraryAPI.payments;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * What a payment intent is created for. The idempotency key is derived from the debt itself,
+ * so repeated requests for the same unpaid debt (page reloads, client or network retries)
+ * return the intent Stripe already created instead of opening a new one.
+ * The paying person and the covered books travel with the intent as metadata; a confirmation
+ * only records the payment for them.
+ */
+public record PaymentQuote(String description, double amount, String idempotencyKey, int personId,
+                           List<Integer> bookIds) {
+
+    public static final String PERSON_ID_METADATA = "person_id";
+    public static final String BOOK_IDS_METADATA = "book_ids";
+
+    public static PaymentQuote of(String description, double amount, String debtKey, int personId,
+                                  List<Integer> bookIds) {
+        String idempotencyKey = UUID.nameUUIDFromBytes((debtKey + ":" + toCents(amount))
+                .getBytes(StandardCharsets.UTF_8)).toString();
+        return new PaymentQuote(description, amount, idempotencyKey, personId, List.copyOf(bookIds));
+    }
+
+    public long amountInCents() {
+        return toCents(amount);
+    }
+
+    public Map<String, String> metadata() {
+        return Map.of(PERSON_ID_METADATA, String.valueOf(personId),
+                BOOK_IDS_METADATA, bookIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    // the book ids a confirmed intent was created for, empty for intents without metadata
+    public static List<Integer> bookIdsOf(Map<String, String> metadata) {
+        String bookIds = metadata == null ? null : metadata.get(BOOK_IDS_METADATA);
+        if (bookIds == null || bookIds.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(bookIds.split(",")).map(Integer::valueOf).toList();
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
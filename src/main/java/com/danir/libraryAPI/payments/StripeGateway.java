@@ -0,0 +1,109 @@
+package com.danir.libraryAPI.payments;
+
+import com.danir.libraryAPI.util.StripeConfig;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The only place that talks to Stripe. Callers must not hold a transaction while calling it:
+ * a remote call can take seconds and would keep a pooled database connection busy for that time.
+ * The API key is passed with every request instead of being set globally, intent creation carries
+ * an idempotency key so network retries are safe, and asynchronous calls run on a small bounded pool
+ * that fails fast when Stripe is slow instead of queueing without limit.
+ */
+@Component
+@Slf4j
+public class StripeGateway {
+
+    private final StripeConfig stripeConfig;
+    private final int maxNetworkRetries;
+    private final int timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    public StripeGateway(StripeConfig stripeConfig,
+                         @Value("${library.payments.max-concurrent-requests:8}") int maxConcurrentRequests,
+                         @Value("${library.payments.max-queued-requests:100}") int maxQueuedRequests,
+                         @Value("${library.payments.max-network-retries:2}") int maxNetworkRetries,
+                         @Value("${library.payments.timeout-ms:10000}") int timeoutMs) {
+        this.stripeConfig = stripeConfig;
+        this.maxNetworkRetries = maxNetworkRetries;
+        this.timeoutMs = timeoutMs;
+        this.executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueuedRequests), new CustomizableThreadFactory("stripe-"));
+        this.executor.allowCoreThreadTimeOut(true);
+
+        // only set for a local stand-in of the Stripe API
+        if (stripeConfig.getApiBase() != null && !stripeConfig.getApiBase().isBlank()) {
+            log.warn("Stripe API base overridden with {}", stripeConfig.getApiBase());
+            Stripe.overrideApiBase(stripeConfig.getApiBase());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public PaymentIntent createPaymentIntent(PaymentQuote quote) throws StripeException {
+        log.debug("Creating Stripe payment intent with amount: {} and description: {}", quote.amount(), quote.description());
+        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+                .setAmount(quote.amountInCents())
+                .setCurrency(stripeConfig.getCurrency())
+                .setDescription(quote.description())
+                .putAllMetadata(quote.metadata())
+                .build();
+
+        return PaymentIntent.create(params, requestOptions(quote.idempotencyKey()));
+    }
+
+    /**
+     * Creates the intent on the Stripe pool. The returned future is the completion callback:
+     * it completes with the intent, or exceptionally with the StripeException,
+     * or with a RejectedExecutionException when too many requests are already waiting.
+     */
+    public CompletableFuture<PaymentIntent> createPaymentIntentAsync(PaymentQuote quote) {
+        CompletableFuture<PaymentIntent> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(createPaymentIntent(quote));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Stripe request rejected, {} requests are waiting", executor.getQueue().size());
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
+        log.debug("Retrieving payment intent with ID: {}", paymentIntentId);
+        return PaymentIntent.retrieve(paymentIntentId, requestOptions(null));
+    }
+
+    private RequestOptions requestOptions(String idempotencyKey) {
+        return RequestOptions.builder()
+                .setApiKey(stripeConfig.getSecretKey())
+                .setIdempotencyKey(idempotencyKey)
+                .setMaxNetworkRetries(maxNetworkRetries)
+                .setConnectTimeout(timeoutMs)
+                .setReadTimeout(timeoutMs)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "library.notifications.consumers")
+@Data
+public class NotificationConsumerProperties {
+    // bounds for the consumer count set by NotificationConsumerScaler
+    private int minConsumers = 1;
+    private int maxConsumers = 8;
+    // queued messages one consumer is expected to drain before another one is added
+    private int messagesPerConsumer = 100;
+    // unacknowledged messages the broker pushes to one consumer
+    private int prefetch = 50;
+    // messages handed to the listener at once, 1 disables batch consumption;
+    // the listener sends one delivered batch over shared SMTP connections, so this bounds the connection reuse
+    private int batchSize = 20;
+    // how long a consumer waits to fill a batch before delivering a partial one
+    private long batchReceiveTimeoutMs = 1000;
+}
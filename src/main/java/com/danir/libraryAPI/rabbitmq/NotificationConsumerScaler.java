@@ -0,0 +1,65 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes the notification consumers by queue depth: one consumer per messages-per-consumer queued messages,
+ * within [min-consumers, max-consumers]. The polled depth is also exported as the backlog gauge.
+ */
+@Component
+@Slf4j
+public class NotificationConsumerScaler {
+
+    private final AmqpAdmin amqpAdmin;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final NotificationConsumerProperties properties;
+    private final LibraryMetrics libraryMetrics;
+
+    public NotificationConsumerScaler(AmqpAdmin amqpAdmin,
+                                      RabbitListenerEndpointRegistry listenerRegistry,
+                                      NotificationConsumerProperties properties,
+                                      LibraryMetrics libraryMetrics) {
+        this.amqpAdmin = amqpAdmin;
+        this.listenerRegistry = listenerRegistry;
+        this.properties = properties;
+        this.libraryMetrics = libraryMetrics;
+    }
+
+    @Scheduled(fixedDelayString = "${library.notifications.consumers.scale-interval-ms:5000}")
+    public void scale() {
+        QueueInformation queueInformation = amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_NAME);
+        if (queueInformation == null) {
+            log.debug("Queue {} does not exist yet", RabbitMQConfig.QUEUE_NAME);
+            return;
+        }
+        int backlog = queueInformation.getMessageCount();
+        libraryMetrics.recordNotificationBacklog(backlog);
+
+        if (!(listenerRegistry.getListenerContainer(NotificationListenerConfig.LISTENER_ID)
+                instanceof SimpleMessageListenerContainer container) || !container.isRunning()) {
+            return;
+        }
+
+        int target = targetConsumers(backlog);
+        libraryMetrics.recordNotificationConsumers(target);
+        if (target != container.getActiveConsumerCount()) {
+            log.info("Scaling notification consumers to {} for a backlog of {} messages", target, backlog);
+            container.setConcurrentConsumers(target);
+        }
+    }
+
+    int targetConsumers(int backlog) {
+        int min = Math.max(1, properties.getMinConsumers());
+        int max = Math.max(min, properties.getMaxConsumers());
+        int perConsumer = Math.max(1, properties.getMessagesPerConsumer());
+        int needed = (int) Math.ceil(backlog / (double) perConsumer);
+        return Math.min(max, Math.max(min, needed));
+    }
+}
@@ -1,29 +1,88 @@
 package com.danir.libraryAPI.rabbitmq;
 
+import com.danir.libraryAPI.email.EmailBatchResult;
+import com.danir.libraryAPI.email.EmailMessage;
 import com.danir.libraryAPI.email.EmailService;
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import com.danir.libraryAPI.services.ProcessedNotificationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @Slf4j
 public class NotificationListener {
 
     private final EmailService emailService;
+    private final NotificationRetryPublisher notificationRetryPublisher;
+    private final LibraryMetrics libraryMetrics;
+    // the outbox relay publishes at least once, repeats are dropped by message id
+    private final ProcessedNotificationService processedNotificationService;
 
-    public NotificationListener(EmailService emailService) {
+    public NotificationListener(EmailService emailService,
+                                NotificationRetryPublisher notificationRetryPublisher,
+                                LibraryMetrics libraryMetrics,
+                                ProcessedNotificationService processedNotificationService) {
         this.emailService = emailService;
+        this.notificationRetryPublisher = notificationRetryPublisher;
+        this.libraryMetrics = libraryMetrics;
+        this.processedNotificationService = processedNotificationService;
     }
 
-    @RabbitListener(queues = RabbitMQConfig.QUEUE_NAME)
-    public void receiveMessage(NotificationMessage notificationMessage) {
-        log.info("Received message from RabbitMQ: {}", notificationMessage);
+    // up to library.notifications.consumers.batch-size messages per call
+    @RabbitListener(id = NotificationListenerConfig.LISTENER_ID,
+            queues = RabbitMQConfig.QUEUE_NAME,
+            containerFactory = NotificationListenerConfig.CONTAINER_FACTORY)
+    public void receiveMessages(List<Message<NotificationMessage>> messages) {
+        long startedAt = System.nanoTime();
+        log.info("Received {} messages from RabbitMQ", messages.size());
+
+        List<Message<NotificationMessage>> toSend = new ArrayList<>(messages.size());
+        List<EmailMessage> emails = new ArrayList<>(messages.size());
+        for (Message<NotificationMessage> message : messages) {
+            // claimed before sending, this also drops a repeat within the same batch
+            String messageId = message.getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class);
+            if (messageId != null && !processedNotificationService.claim(messageId)) {
+                log.info("Skipping duplicate notification with message id {}", messageId);
+                continue;
+            }
+
+            Long publishedAt = message.getHeaders().get(NotificationPublisher.PUBLISHED_AT_HEADER, Long.class);
+            if (publishedAt != null) {
+                libraryMetrics.recordNotificationLatency(System.currentTimeMillis() - publishedAt);
+            }
+
+            NotificationMessage notificationMessage = message.getPayload();
+            toSend.add(message);
+            emails.add(new EmailMessage(
+                    notificationMessage.getToEmail(),
+                    notificationMessage.getSubject(),
+                    notificationMessage.getMessage()));
+        }
+
+        // Отправка email, the whole delivered batch over pooled SMTP connections
+        EmailBatchResult result = emailService.sendEmails(emails);
+        List<String> sentIds = new ArrayList<>(toSend.size());
+        for (int i = 0; i < toSend.size(); i++) {
+            String messageId = toSend.get(i).getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class);
+            if (messageId == null) {
+                continue;
+            }
+            if (result.isFailed(i)) {
+                processedNotificationService.release(messageId);
+            } else {
+                sentIds.add(messageId);
+            }
+        }
+        processedNotificationService.markSent(sentIds);
+        // failed emails are retried later with backoff instead of being lost or redelivered right away
+        notificationRetryPublisher.retryOrDeadLetter(toSend, result.failures());
 
-        // Отправка email
-        emailService.sendEmail(
-                notificationMessage.getToEmail(),
-                notificationMessage.getSubject(),
-                notificationMessage.getMessage()
-        );
+        libraryMetrics.recordNotificationBatchHandled(System.nanoTime() - startedAt);
     }
 }
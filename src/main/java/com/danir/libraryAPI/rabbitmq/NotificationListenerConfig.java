@@ -0,0 +1,47 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class NotificationListenerConfig {
+
+    public static final String CONTAINER_FACTORY = "notificationListenerContainerFactory";
+    public static final String LISTENER_ID = "notificationListener";
+
+    /**
+     * Container for the notification consumers. Messages are always delivered to the listener as a list
+     * of up to batch-size messages, whose emails share SMTP connections; with batch-size 1 every list holds
+     * a single message and every email opens its own connection. The consumer count starts at min-consumers
+     * and is adjusted to the queue depth by {@link NotificationConsumerScaler}.
+     */
+    @Bean(CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory notificationListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            Jackson2JsonMessageConverter messageConverter,
+            NotificationConsumerProperties properties,
+            ObjectProvider<ContainerCustomizer<SimpleMessageListenerContainer>> containerCustomizer) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setConcurrentConsumers(Math.max(1, properties.getMinConsumers()));
+        // the broker has to push at least one full batch to a consumer
+        factory.setPrefetchCount(Math.max(properties.getPrefetch(), batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(properties.getBatchReceiveTimeoutMs());
+        // a listener exception dead-letters the batch instead of redelivering it in a loop
+        factory.setDefaultRequeueRejected(false);
+        containerCustomizer.ifAvailable(factory::setContainerCustomizer);
+        return factory;
+    }
+}
@@ -1,24 +1,85 @@
 package com.danir.libraryAPI.rabbitmq;
 
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+
 @Component
 @Slf4j
 public class NotificationPublisher {
 
+    // publish time in epoch millis, used by the listener to measure queueing latency
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+
+    private static final long CONFIRM_TIMEOUT_MS = 10_000;
+
+    private static final MessagePostProcessor STAMP_PUBLISHED_AT = message -> {
+        message.getMessageProperties().setHeader(PUBLISHED_AT_HEADER, System.currentTimeMillis());
+        return message;
+    };
+
     private final RabbitTemplate rabbitTemplate;
+    private final LibraryMetrics libraryMetrics;
 
-    public NotificationPublisher(RabbitTemplate rabbitTemplate) {
+    public NotificationPublisher(RabbitTemplate rabbitTemplate, LibraryMetrics libraryMetrics) {
         this.rabbitTemplate = rabbitTemplate;
+        this.libraryMetrics = libraryMetrics;
     }
 
     public void sendNotification(NotificationMessage message) {
         rabbitTemplate.convertAndSend(
                 RabbitMQConfig.EXCHANGE_NAME,
                 RabbitMQConfig.ROUTING_KEY,
-                message);
+                message,
+                STAMP_PUBLISHED_AT);
+        libraryMetrics.recordNotificationsPublished(1);
         log.info("Message sent to RabbitMQ: {}", message);
     }
+
+    /**
+     * Publishes all messages over one channel instead of one channel checkout per message
+     * and waits until the broker has confirmed the whole batch (spring.rabbitmq.publisher-confirm-type: simple).
+     * Throws an AmqpException if any message of the batch was nacked or not confirmed in time.
+     */
+    public void sendNotifications(List<NotificationMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        rabbitTemplate.invoke(operations -> {
+            for (NotificationMessage message : messages) {
+                operations.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, RabbitMQConfig.ROUTING_KEY, message,
+                        STAMP_PUBLISHED_AT);
+            }
+            operations.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+            return null;
+        });
+        libraryMetrics.recordNotificationsPublished(messages.size());
+        log.info("{} messages sent to RabbitMQ in one batch", messages.size());
+    }
+
+    // same as sendNotifications, every message carries its key as AMQP message id for deduplication
+    public void sendNotificationsWithIds(Map<String, NotificationMessage> messagesById) {
+        if (messagesById.isEmpty()) {
+            return;
+        }
+
+        rabbitTemplate.invoke(operations -> {
+            messagesById.forEach((messageId, message) ->
+                    operations.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, RabbitMQConfig.ROUTING_KEY, message,
+                            amqpMessage -> {
+                                amqpMessage.getMessageProperties().setMessageId(messageId);
+                                return STAMP_PUBLISHED_AT.postProcessMessage(amqpMessage);
+                            }));
+            operations.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+            return null;
+        });
+        libraryMetrics.recordNotificationsPublished(messagesById.size());
+        log.info("{} messages sent to RabbitMQ in one batch", messagesById.size());
+    }
 }
@@ -0,0 +1,151 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes notifications whose email could not be sent: to the retry queue of the next attempt while attempts are left,
+ * otherwise to the dead-letter queue. The attempt number travels in the {@value #ATTEMPT_HEADER} header.
+ */
+@Component
+@Slf4j
+public class NotificationRetryPublisher {
+
+    // delivery attempt of the message, absent on the first delivery
+    public static final String ATTEMPT_HEADER = "x-delivery-attempt";
+    public static final String LAST_ERROR_HEADER = "x-last-error";
+
+    private static final long CONFIRM_TIMEOUT_MS = 10_000;
+    private static final int MAX_ERROR_LENGTH = 200;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final LibraryMetrics libraryMetrics;
+    private final int retryLevels;
+
+    public NotificationRetryPublisher(RabbitTemplate rabbitTemplate,
+                                      AmqpAdmin amqpAdmin,
+                                      LibraryMetrics libraryMetrics,
+                                      @Value("${library.notifications.retry.delays-ms}") List<Long> retryDelaysMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.libraryMetrics = libraryMetrics;
+        this.retryLevels = retryDelaysMs.size();
+    }
+
+    /**
+     * Republishes the failed messages of a delivered batch and waits for the broker confirms,
+     * so the batch is only acknowledged once every failed notification is stored in a retry or dead-letter queue.
+     */
+    public void retryOrDeadLetter(List<Message<NotificationMessage>> messages, Map<Integer, Exception> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        int[] counts = new int[2]; // retried, dead-lettered
+        rabbitTemplate.invoke(operations -> {
+            failures.forEach((position, error) -> {
+                Message<NotificationMessage> message = messages.get(position);
+                int attempt = attemptOf(message);
+                String lastError = truncate(error.getMessage());
+
+                if (attempt <= retryLevels) {
+                    operations.convertAndSend(RabbitMQConfig.RETRY_EXCHANGE_NAME, RabbitMQConfig.retryRoutingKey(attempt - 1),
+                            message.getPayload(), headers(message, attempt + 1, lastError));
+                    counts[0]++;
+                } else {
+                    log.warn("Notification to {} failed {} times, moving it to the dead-letter queue",
+                            message.getPayload().getToEmail(), attempt);
+                    operations.convertAndSend(RabbitMQConfig.DEAD_LETTER_EXCHANGE_NAME, RabbitMQConfig.DEAD_LETTER_ROUTING_KEY,
+                            message.getPayload(), headers(message, attempt, lastError));
+                    counts[1]++;
+                }
+            });
+            operations.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+            return null;
+        });
+
+        libraryMetrics.recordNotificationsRetried(counts[0]);
+        libraryMetrics.recordNotificationsDeadLettered(counts[1]);
+        log.info("{} notifications scheduled for retry, {} dead-lettered", counts[0], counts[1]);
+    }
+
+    /**
+     * Moves up to max messages from the dead-letter queue back to the notification queue with a fresh attempt count.
+     * A message is acknowledged in the dead-letter queue only after the broker confirmed its republication.
+     */
+    public int replayDeadLetters(int max) {
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            int count = 0;
+            while (count < max) {
+                GetResponse response = channel.basicGet(RabbitMQConfig.DEAD_LETTER_QUEUE_NAME, false);
+                if (response == null) {
+                    break;
+                }
+
+                AMQP.BasicProperties properties = response.getProps();
+                Map<String, Object> headers = properties.getHeaders() == null
+                        ? new HashMap<>()
+                        : new HashMap<>(properties.getHeaders());
+                headers.remove(ATTEMPT_HEADER);
+                headers.remove("x-death");
+
+                channel.basicPublish(RabbitMQConfig.EXCHANGE_NAME, RabbitMQConfig.ROUTING_KEY,
+                        properties.builder().headers(headers).build(), response.getBody());
+                channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+                channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                count++;
+            }
+            return count;
+        });
+
+        log.info("Replayed {} notifications from the dead-letter queue", replayed);
+        return replayed == null ? 0 : replayed;
+    }
+
+    public long deadLetterCount() {
+        QueueInformation queueInformation = amqpAdmin.getQueueInfo(RabbitMQConfig.DEAD_LETTER_QUEUE_NAME);
+        return queueInformation == null ? 0 : queueInformation.getMessageCount();
+    }
+
+    static int attemptOf(Message<?> message) {
+        Object attempt = message.getHeaders().get(ATTEMPT_HEADER);
+        return attempt instanceof Number number ? number.intValue() : 1;
+    }
+
+    private static MessagePostProcessor headers(Message<?> original, int attempt, String lastError) {
+        Object publishedAt = original.getHeaders().get(NotificationPublisher.PUBLISHED_AT_HEADER);
+        String messageId = original.getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class);
+        return amqpMessage -> {
+            // keeps deduplication working for retried outbox messages
+            amqpMessage.getMessageProperties().setMessageId(messageId);
+            amqpMessage.getMessageProperties().setHeader(ATTEMPT_HEADER, attempt);
+            amqpMessage.getMessageProperties().setHeader(LAST_ERROR_HEADER, lastError);
+            if (publishedAt != null) {
+                amqpMessage.getMessageProperties().setHeader(NotificationPublisher.PUBLISHED_AT_HEADER, publishedAt);
+            }
+            return amqpMessage;
+        };
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return "unknown error";
+        }
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
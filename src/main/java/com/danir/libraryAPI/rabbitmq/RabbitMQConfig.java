@@ -2,12 +2,26 @@ package com.danir.libraryAPI.rabbitmq;
 
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notification topology. Emails that could not be sent are parked in one retry queue per attempt;
+ * every retry queue has its own TTL and dead-letters expired messages back to the main exchange,
+ * which gives exponential backoff without redelivery loops. Messages that used up all attempts,
+ * or that the listener rejected, end up in the dead-letter queue until an admin replays them.
+ */
 @Configuration
 public class RabbitMQConfig {
 
@@ -15,14 +29,31 @@ public class RabbitMQConfig {
     public static final String EXCHANGE_NAME = "overdue_books_exchange";
     public static final String ROUTING_KEY = "book.overdue";
 
+    public static final String RETRY_EXCHANGE_NAME = "overdue_books_retry_exchange";
+    public static final String DEAD_LETTER_EXCHANGE_NAME = "overdue_books_dlx";
+    public static final String DEAD_LETTER_QUEUE_NAME = "overdue_books_dlq";
+    public static final String DEAD_LETTER_ROUTING_KEY = "book.overdue.dead";
+
+    public static String retryQueueName(int level) {
+        return QUEUE_NAME + ".retry." + level;
+    }
+
+    public static String retryRoutingKey(int level) {
+        return "retry." + level;
+    }
+
     @Bean
     public Jackson2JsonMessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
     }
 
+    // an existing queue declared without dead-lettering has to be deleted once, the broker rejects changed arguments
     @Bean
     public Queue queue() {
-        return new Queue(QUEUE_NAME, true); // durable=true - queue will be saved after restart
+        return QueueBuilder.durable(QUEUE_NAME) // durable - queue will be saved after restart
+                .deadLetterExchange(DEAD_LETTER_EXCHANGE_NAME)
+                .deadLetterRoutingKey(DEAD_LETTER_ROUTING_KEY)
+                .build();
     }
 
     @Bean
@@ -34,4 +65,30 @@ public class RabbitMQConfig {
     public Binding binding(Queue queue, TopicExchange exchange) {
         return BindingBuilder.bind(queue).to(exchange).with(ROUTING_KEY);
     }
+
+    @Bean
+    public Declarables deadLetterTopology() {
+        DirectExchange deadLetterExchange = new DirectExchange(DEAD_LETTER_EXCHANGE_NAME);
+        Queue deadLetterQueue = QueueBuilder.durable(DEAD_LETTER_QUEUE_NAME).build();
+        return new Declarables(deadLetterExchange, deadLetterQueue,
+                BindingBuilder.bind(deadLetterQueue).to(deadLetterExchange).with(DEAD_LETTER_ROUTING_KEY));
+    }
+
+    @Bean
+    public Declarables retryTopology(@Value("${library.notifications.retry.delays-ms}") List<Long> retryDelaysMs) {
+        DirectExchange retryExchange = new DirectExchange(RETRY_EXCHANGE_NAME);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retryExchange);
+
+        for (int level = 0; level < retryDelaysMs.size(); level++) {
+            Queue retryQueue = QueueBuilder.durable(retryQueueName(level))
+                    .ttl(Math.toIntExact(retryDelaysMs.get(level)))
+                    .deadLetterExchange(EXCHANGE_NAME)
+                    .deadLetterRoutingKey(ROUTING_KEY)
+                    .build();
+            declarables.add(retryQueue);
+            declarables.add(BindingBuilder.bind(retryQueue).to(retryExchange).with(retryRoutingKey(level)));
+        }
+        return new Declarables(declarables);
+    }
 }
@@ -1,29 +1,149 @@
 package com.danir.libraryAPI.repositories;
 
+import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.BookSuggestionDTO;
+import com.danir.libraryAPI.dto.OverdueDigestRowDTO;
+import com.danir.libraryAPI.dto.OverdueNoticeDTO;
 import com.danir.libraryAPI.models.Book;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Integer> {
+
+    // listing row with borrower and reserver names and the overdue flag, read in one joined query
+    String LISTING_SELECT = "select new com.danir.libraryAPI.dto.BookDTO(b.bookId, b.name, b.author, b.year, " +
+            "p.fullName, r.fullName, case when b.borrowedDate <= :overdueBefore then true else false end) " +
+            "from Book b left join b.person p left join b.reservedBy r ";
+
     @Query("from Book b order by b.year")
     Page<Book> findAll(Pageable pageable);
-    @Query("from Book b where LOWER(b.name) like LOWER(:title) || '%'")
-    List<Book> findByTitleStartingWith(@Param("title") String title);
+    // substring search over title and author, served by the pg_trgm GIN indexes on lower(name) and lower(author)
+    @Query(value = """
+            SELECT b.* FROM book b
+            WHERE lower(b.name) LIKE '%' || :pattern || '%' OR lower(b.author) LIKE '%' || :pattern || '%'
+            ORDER BY (lower(b.name) LIKE :pattern || '%') DESC,
+                     GREATEST(similarity(lower(b.name), :query), similarity(lower(b.author), :query)) DESC,
+                     b.book_id
+            """,
+            countQuery = """
+            SELECT count(*) FROM book b
+            WHERE lower(b.name) LIKE '%' || :pattern || '%' OR lower(b.author) LIKE '%' || :pattern || '%'
+            """,
+            nativeQuery = true)
+    Page<Book> searchByTitleOrAuthor(@Param("query") String query, @Param("pattern") String pattern, Pageable pageable);
     Page<Book> findByPersonIsNullAndReservedByIsNull(Pageable pageable);
-    @Query("select b from Book b where b.borrowedDate is not null and b.borrowedDate <= :tenDaysAgo")
-    Page<Book> findOverdueBooks(OffsetDateTime tenDaysAgo, Pageable pageable);
+
+    long countByPersonIsNullAndReservedByIsNull();
+
+    long countByPersonIsNotNull();
+
+    long countByPersonIsNotNullAndBorrowedDateBefore(OffsetDateTime overdueBefore);
+    // keyset pagination over (year, book_id): served by idx_book_year_book_id (schema-postgres.sql), no OFFSET and no COUNT
+    @Query(LISTING_SELECT + "where (b.year, b.bookId) > (:year, :bookId) order by b.year, b.bookId")
+    List<BookDTO> findPageAfter(@Param("year") int year, @Param("bookId") int bookId,
+                                @Param("overdueBefore") OffsetDateTime overdueBefore, Pageable pageable);
+    @Query(LISTING_SELECT + "where b.person is null and b.reservedBy is null " +
+            "and (b.year, b.bookId) > (:year, :bookId) order by b.year, b.bookId")
+    List<BookDTO> findAvailablePageAfter(@Param("year") int year, @Param("bookId") int bookId,
+                                         @Param("overdueBefore") OffsetDateTime overdueBefore, Pageable pageable);
+    @Query(LISTING_SELECT + "order by b.year, b.bookId")
+    List<BookDTO> findAllListings(@Param("overdueBefore") OffsetDateTime overdueBefore);
+
+    // keyset page of overdue books after the given id, borrower fetched in the same query
+    @Query("""
+            select new com.danir.libraryAPI.dto.OverdueNoticeDTO(b.bookId, b.name, p.email, p.fullName)
+            from Book b join b.person p
+            where b.borrowedDate <= :overdueBefore and b.bookId > :afterId and p.email is not null
+            order by b.bookId""")
+    List<OverdueNoticeDTO> findOverdueNoticesAfter(@Param("overdueBefore") OffsetDateTime overdueBefore,
+                                                  @Param("afterId") int afterId,
+                                                  Pageable pageable);
+
+    // keyset page of overdue books ordered by borrower, served by the (person_id, book_id) index
+    @Query("""
+            select new com.danir.libraryAPI.dto.OverdueDigestRowDTO(p.personId, p.email, p.fullName, b.bookId, b.name, b.debt)
+            from Book b join b.person p
+            where b.borrowedDate <= :overdueBefore and p.email is not null
+              and (p.personId, b.bookId) > (:personId, :bookId)
+            order by p.personId, b.bookId""")
+    List<OverdueDigestRowDTO> findOverdueDigestRowsAfter(@Param("overdueBefore") OffsetDateTime overdueBefore,
+                                                         @Param("personId") int personId,
+                                                         @Param("bookId") int bookId,
+                                                         Pageable pageable);
+
+    // forward-only cursor over the whole catalog; DTOs are not managed, so the persistence context stays empty
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(LISTING_SELECT + "order by b.bookId")
+    Stream<BookDTO> streamAllListings(@Param("overdueBefore") OffsetDateTime overdueBefore);
+    @Query("select new com.danir.libraryAPI.dto.BookSuggestionDTO(b.bookId, b.name, b.author) from Book b")
+    Stream<BookSuggestionDTO> streamSuggestions();
+    // the books a payment covered that the person still holds unpaid, locked in id order for marking them paid
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.person.personId = :personId and b.isDebtPaid = false and b.bookId in :bookIds order by b.bookId")
+    List<Book> findUnpaidBooksOfPerson(@Param("personId") int personId, @Param("bookIds") Collection<Integer> bookIds);
+    @Query("select b.bookId from Book b where b.person.personId = :personId and b.isDebtPaid = false order by b.bookId")
+    List<Integer> findUnpaidBookIdsOfPerson(@Param("personId") int personId);
+    // row locks in id order, so concurrent batches can not deadlock each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.bookId in :ids order by b.bookId")
+    List<Book> findAllByIdForUpdate(@Param("ids") Collection<Integer> ids);
+
+    // reserves the book only if nobody holds a reservation yet; the affected row count tells who won.
+    // Books loaded earlier in the persistence context are stale afterwards, so it is cleared
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE book SET reserved_by_id = :personId WHERE book_id = :bookId AND reserved_by_id IS NULL",
+            nativeQuery = true)
+    int reserveIfFree(@Param("bookId") int bookId, @Param("personId") int personId);
+
+    @Query("select min(b.bookId) from Book b")
+    Integer findMinBookId();
+    @Query("select max(b.bookId) from Book b")
+    Integer findMaxBookId();
+
+    // set-based overdue flag and debt recalculation for borrowed books in the id range [fromId, toId]
+    @Modifying
+    @Query(value = """
+            UPDATE book SET
+                is_overdue = (borrowed_date <= CAST(:overdueBefore AS timestamptz)),
+                debt = CASE
+                    WHEN is_debt_paid IS NULL OR is_debt_paid THEN 0.0
+                    WHEN FLOOR(EXTRACT(EPOCH FROM (CAST(:now AS timestamptz) - borrowed_date)) / 86400) > 10
+                        THEN 10 + (FLOOR(EXTRACT(EPOCH FROM (CAST(:now AS timestamptz) - borrowed_date)) / 86400) - 10) * 5.0
+                    ELSE FLOOR(EXTRACT(EPOCH FROM (CAST(:now AS timestamptz) - borrowed_date)) / 86400) * 1.0
+                END
+            WHERE book_id BETWEEN :fromId AND :toId
+              AND borrowed_date IS NOT NULL
+              AND borrowed_date <= CAST(:now AS timestamptz)
+            """, nativeQuery = true)
+    int recalculateOverdueAndDebt(@Param("fromId") int fromId,
+                                  @Param("toId") int toId,
+                                  @Param("now") OffsetDateTime now,
+                                  @Param("overdueBefore") OffsetDateTime overdueBefore);
+
+    // paid books that are still borrowed and were paid before paidBefore owe again;
+    // the predicate matches the partial index idx_book_paid_loans_payment_date, so only such loans are read
     @Modifying
-    @Transactional
-    @Query("UPDATE Book b SET b.isOverdue = TRUE WHERE b.borrowedDate <= CURRENT_DATE - 10")
-    void updateOverdueBooks();
+    @Query(value = """
+            UPDATE book SET is_debt_paid = false
+            WHERE is_debt_paid = true
+              AND person_id IS NOT NULL
+              AND payment_date < CAST(:paidBefore AS timestamptz)
+            """, nativeQuery = true)
+    int reopenDebtsOfUnreturnedBooks(@Param("paidBefore") OffsetDateTime paidBefore);
 }
@@ -0,0 +1,22 @@
+package com.danir.libraryAPI.repositories;
+
+import com.danir.libraryAPI.models.JobPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JobPartitionRepository extends JpaRepository<JobPartition, Long> {
+
+    List<JobPartition> findByJobNameAndStatusNotOrderByFromId(String jobName, JobPartition.Status status);
+
+    List<JobPartition> findByJobNameOrderByFromId(String jobName);
+
+    @Modifying
+    @Query("delete from JobPartition p where p.jobName = :jobName")
+    int deleteByJobName(@Param("jobName") String jobName);
+}
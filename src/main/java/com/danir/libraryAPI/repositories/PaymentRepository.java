@@ -4,5 +4,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import com.danir.libraryAPI.models.Payment;
 
 public interface PaymentRepository extends JpaRepository<Payment, Integer> {
-}
 
+    boolean existsByPaymentIntentId(String paymentIntentId);
+}
@@ -2,6 +2,7 @@ package com.danir.libraryAPI.repositories;
 
 import com.danir.libraryAPI.models.Person;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,5 +16,9 @@ public interface PeopleRepository extends JpaRepository<Person, Integer> {
     Optional<Person> findByEmail(String email);
     @Query("SELECT p FROM Person p LEFT JOIN FETCH p.bookList WHERE p.personId = :id")
     Optional<Person> findByIdWithBooks(@Param("id") int id);
+    // rehash after login, touches only the password column of the loaded person
+    @Modifying
+    @Query("UPDATE Person p SET p.password = :password WHERE p.personId = :id")
+    int updatePassword(@Param("id") int id, @Param("password") String password);
 
 }
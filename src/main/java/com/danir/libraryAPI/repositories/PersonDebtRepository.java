@@ -0,0 +1,51 @@
+package com.danir.libraryAPI.repositories;
+
+import com.danir.libraryAPI.models.PersonDebt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+@Repository
+public interface PersonDebtRepository extends JpaRepository<PersonDebt, Integer> {
+
+    String SUM_UNPAID_LOANS = """
+            INSERT INTO person_debt (person_id, balance, books_with_debt, updated_at)
+            SELECT p.person_id,
+                   COALESCE(SUM(b.debt) FILTER (WHERE b.is_debt_paid = false), 0),
+                   COUNT(b.book_id) FILTER (WHERE b.is_debt_paid = false AND b.debt > 0),
+                   CAST(:now AS timestamptz)
+            FROM person p LEFT JOIN book b ON b.person_id = p.person_id
+            """;
+
+    String UPSERT = """
+            GROUP BY p.person_id
+            ON CONFLICT (person_id) DO UPDATE SET
+                balance = EXCLUDED.balance,
+                books_with_debt = EXCLUDED.books_with_debt,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    // row locks held until commit; the upsert that follows in a later statement then sees every loan change
+    // committed by a transaction that held the lock before
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM person WHERE person_id IN (:personIds) ORDER BY person_id FOR UPDATE) locked",
+            nativeQuery = true)
+    long lockPeople(@Param("personIds") Collection<Integer> personIds);
+
+    // FOR KEY SHARE waits for running refreshes but does not block ordinary updates of person rows
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM person FOR KEY SHARE) locked", nativeQuery = true)
+    long lockAllPeople();
+
+    // pending book changes of the current transaction are flushed first, the sums are read from the book table
+    @Modifying(flushAutomatically = true)
+    @Query(value = SUM_UNPAID_LOANS + "WHERE p.person_id IN (:personIds)\n" + UPSERT, nativeQuery = true)
+    int refresh(@Param("personIds") Collection<Integer> personIds, @Param("now") OffsetDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = SUM_UNPAID_LOANS + UPSERT, nativeQuery = true)
+    int rebuild(@Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,40 @@
+package com.danir.libraryAPI.repositories;
+
+import com.danir.libraryAPI.models.ProcessedNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+@Repository
+public interface ProcessedNotificationRepository extends JpaRepository<ProcessedNotification, String> {
+
+    // 1 if this call claimed the id, either new or taken over from a PENDING claim older than staleBefore;
+    // 0 if it was sent or is being sent (by any instance)
+    @Modifying
+    @Query(value = """
+            INSERT INTO processed_notification (message_id, status, claimed_at, processed_at)
+            VALUES (:messageId, 'PENDING', CAST(:now AS timestamptz), CAST(:now AS timestamptz))
+            ON CONFLICT (message_id) DO UPDATE SET
+                claimed_at = EXCLUDED.claimed_at,
+                processed_at = EXCLUDED.processed_at
+            WHERE processed_notification.status = 'PENDING'
+              AND processed_notification.claimed_at < CAST(:staleBefore AS timestamptz)
+            """, nativeQuery = true)
+    int claim(@Param("messageId") String messageId,
+              @Param("now") OffsetDateTime now,
+              @Param("staleBefore") OffsetDateTime staleBefore);
+
+    @Modifying
+    @Query("update ProcessedNotification n set n.status = com.danir.libraryAPI.models.ProcessedNotification.Status.SENT, " +
+            "n.processedAt = :now where n.messageId in :messageIds")
+    int markSent(@Param("messageIds") Collection<String> messageIds, @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Query("delete from ProcessedNotification n where n.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") OffsetDateTime before);
+}
@@ -1,47 +1,146 @@
 package com.danir.libraryAPI.restContollers;
 
+import com.danir.libraryAPI.dto.BookCursor;
 import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.BookOperationDTO;
+import com.danir.libraryAPI.dto.BookPageDTO;
+import com.danir.libraryAPI.dto.BookSuggestionDTO;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.services.BookService;
+import com.danir.libraryAPI.services.BookSuggestionService;
 import com.danir.libraryAPI.services.PeopleService;
+import com.danir.libraryAPI.util.CacheConfig;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/books")
 @Slf4j
 public class BooksApiController {
 
+    private static final int NDJSON_FLUSH_EVERY = 500;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final BookService bookService;
     private final PeopleService peopleService;
+    private final BookSuggestionService bookSuggestionService;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
 
     @Autowired
-    public BooksApiController(BookService bookService, PeopleService peopleService) {
+    public BooksApiController(BookService bookService, PeopleService peopleService, BookSuggestionService bookSuggestionService, ObjectMapper objectMapper, CacheManager cacheManager) {
         this.bookService = bookService;
         this.peopleService = peopleService;
+        this.bookSuggestionService = bookSuggestionService;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
     }
 
     @GetMapping
     public ResponseEntity<List<BookDTO>> getAllBooks() {
-        List<BookDTO> bookDTOList = bookService.findAll()
-                .stream()
-                .map(bookService::convertToBookDTO)
-                .toList();
+        return ResponseEntity.ok(bookService.findAllListings());
+    }
+
+    // NDJSON mode of GET /api/books: one BookDTO per line, written while the database cursor is read
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        log.info("Streaming all books as NDJSON");
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                long[] written = {0};
+
+                long exported = bookService.exportCatalog(bookDTO -> {
+                    try {
+                        writer.writeValue(generator, bookDTO);
+                        generator.writeRaw('\n');
+                        if (++written[0] % NDJSON_FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                log.info("NDJSON export streamed {} books", exported);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
-        return ResponseEntity.ok(bookDTOList);
+    @GetMapping("/page")
+    public ResponseEntity<?> getBooksPage(@RequestParam(required = false) String after,
+                                          @RequestParam(required = false, defaultValue = "20") int size,
+                                          @RequestParam(required = false, defaultValue = "false") boolean onlyAvailable) {
+        BookCursor cursor;
+        try {
+            cursor = BookCursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid catalog cursor: {}", after);
+            return ResponseEntity.badRequest().body(e.getMessage()); // 400 Bad Request
+        }
+
+        BookPageDTO bookPage = bookService.findCatalogPage(cursor, size, onlyAvailable);
+        return ResponseEntity.ok(bookPage);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestionDTO>> suggest(@RequestParam("q") String query,
+                                                           @RequestParam(required = false, defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookSuggestionService.suggest(query, Math.max(1, Math.min(limit, 50))));
+    }
+
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Cache cache = cacheManager.getCache(CacheConfig.BOOK_DETAILS);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        CacheStats stats = nativeCache.stats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", nativeCache.estimatedSize());
+        body.put("hitCount", stats.hitCount());
+        body.put("missCount", stats.missCount());
+        body.put("hitRate", stats.hitRate());
+        body.put("evictionCount", stats.evictionCount());
+        return ResponseEntity.ok(body);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<BookDTO> getBookById(@PathVariable int id) {
-        BookDTO bookDTO = bookService.convertToBookDTO(bookService.findOne(id));
+        BookDTO bookDTO = bookService.getBookDetails(id);
         return new ResponseEntity<>(bookDTO, HttpStatus.OK);
     }
 
@@ -112,6 +211,32 @@ public class BooksApiController {
         return ResponseEntity.ok(bookDTO);
     }
 
+    @PostMapping("/batch/assign")
+    public ResponseEntity<?> assignBooks(@RequestBody List<BookOperationDTO> operations) {
+        return executeBatch(BookOperationDTO.Type.ASSIGN, operations);
+    }
+
+    @PostMapping("/batch/release")
+    public ResponseEntity<?> releaseBooks(@RequestBody List<BookOperationDTO> operations) {
+        return executeBatch(BookOperationDTO.Type.RELEASE, operations);
+    }
+
+    @PostMapping("/batch/reserve")
+    public ResponseEntity<?> reserveBooks(@RequestBody List<BookOperationDTO> operations) {
+        return executeBatch(BookOperationDTO.Type.RESERVE, operations);
+    }
+
+    private ResponseEntity<?> executeBatch(BookOperationDTO.Type type, List<BookOperationDTO> operations) {
+        log.info("Attempting batch {} of {} operations", type, operations == null ? 0 : operations.size());
+        if (operations == null || operations.isEmpty() || operations.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body("Batch must contain between 1 and " + MAX_BATCH_SIZE + " operations"); // 400 Bad Request
+        }
+
+        // per-item outcome, in the order of the request
+        return ResponseEntity.ok(bookService.executeBatch(type, operations));
+    }
+
     @PostMapping("/add")
     public ResponseEntity<BookDTO> addBook(@RequestBody @Valid BookDTO book) {
 
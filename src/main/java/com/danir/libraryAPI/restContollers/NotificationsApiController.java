@@ -0,0 +1,40 @@
+package com.danir.libraryAPI.restContollers;
+
+import com.danir.libraryAPI.rabbitmq.NotificationRetryPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/notifications")
+@Slf4j
+public class NotificationsApiController {
+
+    private static final int MAX_REPLAY = 10_000;
+
+    private final NotificationRetryPublisher notificationRetryPublisher;
+
+    public NotificationsApiController(NotificationRetryPublisher notificationRetryPublisher) {
+        this.notificationRetryPublisher = notificationRetryPublisher;
+    }
+
+    @GetMapping("/dead-letters")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> getDeadLetters() {
+        return ResponseEntity.ok(Map.of("count", notificationRetryPublisher.deadLetterCount()));
+    }
+
+    @PostMapping("/dead-letters/replay")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> replayDeadLetters(@RequestParam(defaultValue = "1000") int max) {
+        if (max <= 0 || max > MAX_REPLAY) {
+            return ResponseEntity.badRequest().body(Map.of("error", "max must be between 1 and " + MAX_REPLAY));
+        }
+        log.info("Replaying up to {} dead-lettered notifications", max);
+        int replayed = notificationRetryPublisher.replayDeadLetters(max);
+        return ResponseEntity.ok(Map.of("replayed", replayed));
+    }
+}
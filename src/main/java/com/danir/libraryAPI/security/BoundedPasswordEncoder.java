@@ -0,0 +1,145 @@
+package com.danir.libraryAPI.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The application's PasswordEncoder. Hashing and verifying a password costs tens of milliseconds of CPU,
+ * so both run on a small dedicated pool instead of the calling request thread: a burst of registrations
+ * or logins queues up here and can not take every core away from page requests.
+ * When the queue is full, callers are rejected right away with {@link PasswordHashingOverloadedException}.
+ * <p>
+ * New hashes are prefixed with the configured algorithm ({bcrypt} or {argon2}); hashes without a prefix
+ * are bcrypt hashes stored before the prefix was introduced. {@link #upgradeEncoding} reports every hash
+ * that does not match the configured algorithm and cost, and Spring Security rehashes it after the next login.
+ */
+@Component
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String ARGON2 = "argon2";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordHashingProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = createDelegate(properties);
+        this.timeoutMs = properties.getTimeoutMs();
+
+        int poolSize = properties.effectivePoolSize();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()), new CustomizableThreadFactory("password-hashing-"));
+        // executor.queued, executor.active, executor.completed, ... tagged name=password.hashing
+        new ExecutorServiceMetrics(executor, "password.hashing", Tags.empty()).bindTo(meterRegistry);
+
+        this.encodeTimer = hashingTimer(meterRegistry, "encode");
+        this.matchesTimer = hashingTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder("library.password.hashing.rejected")
+                .description("Password hash requests rejected because the hashing queue was full")
+                .register(meterRegistry);
+
+        log.info("Password hashing with {} on {} threads", properties.getAlgorithm(), poolSize);
+    }
+
+    // the encoder without the pool, also used by the hashing benchmark
+    public static PasswordEncoder createDelegate(PasswordHashingProperties properties) {
+        String idForEncode = properties.getAlgorithm().toLowerCase();
+        if (!BCRYPT.equals(idForEncode) && !ARGON2.equals(idForEncode)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + properties.getAlgorithm());
+        }
+
+        PasswordHashingProperties.Argon2 argon2 = properties.getArgon2();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(properties.getBcryptStrength());
+        Map<String, PasswordEncoder> encoders = Map.of(
+                BCRYPT, bcrypt,
+                ARGON2, new Argon2PasswordEncoder(argon2.getSaltLength(), argon2.getHashLength(),
+                        argon2.getParallelism(), argon2.getMemoryKb(), argon2.getIterations()));
+
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegatingEncoder;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> onHashingPool(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Boolean matches = matchesTimer.record(() -> onHashingPool(() -> delegate.matches(rawPassword, encodedPassword)));
+        return Boolean.TRUE.equals(matches);
+    }
+
+    // only parses the stored hash, no hashing involved
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T onHashingPool(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hashing rejected, {} requests are waiting", executor.getQueue().size());
+            throw new PasswordHashingOverloadedException("Password hashing is overloaded, try again later", e);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingOverloadedException("Interrupted while waiting for password hashing", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingOverloadedException("Password hashing timed out after " + timeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static Timer hashingTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("library.password.hashing")
+                .description("Time to hash or verify a password, including the wait for a hashing thread")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,34 @@
+package com.danir.libraryAPI.security;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Form login provider. The password checks and the rehash after login run on the hashing pool of
+ * {@link BoundedPasswordEncoder}; when it is overloaded the login fails like any other authentication error
+ * (back to the login page) instead of ending in an error page.
+ */
+public class PasswordHashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    public PasswordHashingAuthenticationProvider(UserDetailsService userDetailsService,
+                                                 UserDetailsPasswordService userDetailsPasswordService,
+                                                 PasswordEncoder passwordEncoder) {
+        setUserDetailsService(userDetailsService);
+        setUserDetailsPasswordService(userDetailsPasswordService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        try {
+            return super.authenticate(authentication);
+        } catch (PasswordHashingOverloadedException e) {
+            throw new InternalAuthenticationServiceException(e.getMessage(), e);
+        }
+    }
+}
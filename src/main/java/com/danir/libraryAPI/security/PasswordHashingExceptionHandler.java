@@ -0,0 +1,31 @@
+package com.danir.libraryAPI.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Registration and profile updates hash the password; if the hashing pool is overloaded
+ * they answer 503 with Retry-After instead of an error page.
+ */
+@ControllerAdvice
+@Slf4j
+public class PasswordHashingExceptionHandler {
+
+    private final PasswordHashingProperties properties;
+
+    public PasswordHashingExceptionHandler(PasswordHashingProperties properties) {
+        this.properties = properties;
+    }
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(PasswordHashingOverloadedException e) {
+        log.warn("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()))
+                .body("The server is busy, please try again in a few seconds.");
+    }
+}
@@ -0,0 +1,13 @@
+package com.danir.libraryAPI.security;
+
+/**
+ * Thrown by {@link BoundedPasswordEncoder} when a password could not be hashed or verified because the hashing
+ * pool is saturated: the queue was full, the hash did not finish in time or the caller was interrupted while waiting.
+ * The request can be retried later; logins report it as an authentication failure, other requests as 503.
+ */
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    public PasswordHashingOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,37 @@
+package com.danir.libraryAPI.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "library.security.password-hashing")
+@Data
+public class PasswordHashingProperties {
+    // algorithm of new hashes, "bcrypt" or "argon2"; hashes of the other one keep working and are rehashed at login
+    private String algorithm = "bcrypt";
+    // log2 of the bcrypt rounds
+    private int bcryptStrength = 10;
+    private Argon2 argon2 = new Argon2();
+    // threads that hash passwords, 0 = half of the available processors
+    private int poolSize = 0;
+    // hash requests waiting for a thread before new ones are rejected
+    private int queueCapacity = 200;
+    // how long a caller waits for its hash, including the time spent in the queue
+    private long timeoutMs = 10_000;
+    // Retry-After of the 503 answered to registrations and updates rejected by the hashing pool
+    private int retryAfterSeconds = 5;
+
+    @Data
+    public static class Argon2 {
+        private int saltLength = 16;
+        private int hashLength = 32;
+        private int parallelism = 1;
+        private int memoryKb = 16_384;
+        private int iterations = 2;
+    }
+
+    public int effectivePoolSize() {
+        return poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+}
@@ -1,44 +1,65 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.dto.BookCursor;
 import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.BookOperationDTO;
+import com.danir.libraryAPI.dto.BookOperationResultDTO;
+import com.danir.libraryAPI.dto.BookPageDTO;
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.BorrowedBook;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.repositories.BookRepository;
 import com.danir.libraryAPI.repositories.PeopleRepository;
+import com.danir.libraryAPI.util.BookMapper;
+import com.danir.libraryAPI.util.CacheConfig;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 @EnableScheduling
+@Timed(value = "library.service", histogram = true)
 public class BookService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final BookRepository bookRepository;
     private final PeopleRepository peopleRepository;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
     private final NotificationService notificationService;
     private final BorrowedBookService borrowedBookService;
+    private final BookSuggestionService bookSuggestionService;
+    private final LibraryMetrics libraryMetrics;
+    private final DebtLedgerService debtLedgerService;
+    private final CacheManager cacheManager;
 
     @Autowired
-    public BookService(BookRepository bookRepository, PeopleRepository peopleRepository, ModelMapper modelMapper, NotificationService notificationService, BorrowedBookService borrowedBookService) {
+    public BookService(BookRepository bookRepository, PeopleRepository peopleRepository, BookMapper bookMapper, NotificationService notificationService, BorrowedBookService borrowedBookService, BookSuggestionService bookSuggestionService, LibraryMetrics libraryMetrics, DebtLedgerService debtLedgerService, CacheManager cacheManager) {
         this.bookRepository = bookRepository;
         this.peopleRepository = peopleRepository;
-        this.modelMapper = modelMapper;
+        this.bookMapper = bookMapper;
         this.notificationService = notificationService;
         this.borrowedBookService = borrowedBookService;
+        this.bookSuggestionService = bookSuggestionService;
+        this.libraryMetrics = libraryMetrics;
+        this.debtLedgerService = debtLedgerService;
+        this.cacheManager = cacheManager;
     }
 
     public List<Book> findAll() {
@@ -52,12 +73,16 @@ public class BookService {
     }
 
     @Transactional
-    public void save(Book book) {
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#book.bookId")
+    public Book save(Book book) {
         log.info("Saving new book: {}", book.getName());
-        bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        bookSuggestionService.put(savedBook);
+        return savedBook;
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#id")
     public void update(int id, Book book) {
         log.info("Updating book with ID: {}", id);
         Book existingBook = bookRepository.findById(id)
@@ -68,15 +93,19 @@ public class BookService {
         existingBook.setYear(book.getYear());
 
         bookRepository.save(existingBook);
+        bookSuggestionService.put(existingBook);
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#id.intValue()")
     public void delete(long id) {
         log.warn("Deleting book with ID: {}", id);
         bookRepository.deleteById((int) id);
+        bookSuggestionService.remove((int) id);
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#book.bookId")
     public void savePersonWithBook(Person person, Book book) {
         log.info("Assigning book '{}' to person '{}'", book.getName(), person.getFullName());
         book.setPerson(person);
@@ -86,6 +115,7 @@ public class BookService {
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#id")
     public void release(Book book, int id) {
         log.info("Releasing book with ID: {}", id);
         if (book == null) {
@@ -98,6 +128,117 @@ public class BookService {
             throw new IllegalArgumentException("The provided ID does not match the book's ID");
         }
 
+        Person borrower = book.getPerson();
+        returnToLibrary(book);
+
+        // save changes
+        bookRepository.save(book);
+        libraryMetrics.recordReleases(1);
+        if (borrower != null) {
+            // the debt of a returned book no longer counts
+            debtLedgerService.refresh(List.of(borrower.getPersonId()));
+        }
+
+        notificationService.notifyBookReleased(book);
+    }
+
+    /**
+     * Applies a list of front desk operations of one type in a single transaction.
+     * The books are locked up front, every operation is validated on its own and reported in the result
+     * at the same position, and the changed rows are written by Hibernate in JDBC batches at commit.
+     * Reservation holders of released books are notified with one publish batch.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true)
+    public List<BookOperationResultDTO> executeBatch(BookOperationDTO.Type type, List<BookOperationDTO> operations) {
+        log.info("Executing batch {} of {} operations", type, operations.size());
+
+        Set<Integer> bookIds = new HashSet<>();
+        Set<Integer> personIds = new HashSet<>();
+        for (BookOperationDTO operation : operations) {
+            if (operation.getBookId() != null) {
+                bookIds.add(operation.getBookId());
+            }
+            if (operation.getPersonId() != null) {
+                personIds.add(operation.getPersonId());
+            }
+        }
+
+        Map<Integer, Book> books = new HashMap<>();
+        if (!bookIds.isEmpty()) {
+            bookRepository.findAllByIdForUpdate(bookIds).forEach(book -> books.put(book.getBookId(), book));
+        }
+        Map<Integer, Person> people = new HashMap<>();
+        if (type != BookOperationDTO.Type.RELEASE && !personIds.isEmpty()) {
+            peopleRepository.findAllById(personIds).forEach(person -> people.put(person.getPersonId(), person));
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Book> releasedBooks = new ArrayList<>();
+        Set<Integer> borrowerIds = new HashSet<>();
+        List<BookOperationResultDTO> results = new ArrayList<>(operations.size());
+
+        for (BookOperationDTO operation : operations) {
+            Book book = operation.getBookId() == null ? null : books.get(operation.getBookId());
+            Person person = operation.getPersonId() == null ? null : people.get(operation.getPersonId());
+
+            if (book == null) {
+                results.add(BookOperationResultDTO.failure(operation, "Book not found"));
+                continue;
+            }
+            if (type != BookOperationDTO.Type.RELEASE && person == null) {
+                results.add(BookOperationResultDTO.failure(operation, "Person not found"));
+                continue;
+            }
+
+            switch (type) {
+                case ASSIGN -> {
+                    if (book.getPerson() != null) {
+                        results.add(BookOperationResultDTO.failure(operation, "Book is already borrowed"));
+                        continue;
+                    }
+                    book.setPerson(person);
+                    book.setBorrowedDate(now);
+                    if (book.getReservedBy() != null && book.getReservedBy().getPersonId() == person.getPersonId()) {
+                        book.setReservedBy(null);
+                    }
+                }
+                case RELEASE -> {
+                    if (book.getPerson() == null) {
+                        results.add(BookOperationResultDTO.failure(operation, "Book is not borrowed"));
+                        continue;
+                    }
+                    borrowerIds.add(book.getPerson().getPersonId());
+                    returnToLibrary(book);
+                    releasedBooks.add(book);
+                }
+                case RESERVE -> {
+                    if (book.getReservedBy() != null) {
+                        results.add(BookOperationResultDTO.failure(operation, "Book is already reserved"));
+                        continue;
+                    }
+                    book.setReservedBy(person);
+                }
+            }
+            results.add(BookOperationResultDTO.success(operation));
+        }
+
+        if (!releasedBooks.isEmpty()) {
+            libraryMetrics.recordReleases(releasedBooks.size());
+            debtLedgerService.refresh(borrowerIds);
+            notificationService.notifyBooksReleased(releasedBooks);
+        }
+        if (type == BookOperationDTO.Type.RESERVE) {
+            libraryMetrics.recordReservations((int) results.stream().filter(BookOperationResultDTO::isSuccess).count());
+        }
+
+        log.info("Batch {} finished: {} of {} operations succeeded", type,
+                results.stream().filter(BookOperationResultDTO::isSuccess).count(), operations.size());
+        return results;
+    }
+
+    // moves the book back to the shelf and records the loan in the borrower's history
+    private void returnToLibrary(Book book) {
         Person person = book.getPerson();
 
         if (person != null) {
@@ -118,11 +259,6 @@ public class BookService {
         book.setOverdue(false);
         book.setIsDebtPaid(false);
         book.setPaymentDate(null);
-
-        // save changes
-        bookRepository.save(book);
-
-        notificationService.notifyBookReleased(book);
     }
 
 
@@ -131,32 +267,46 @@ public class BookService {
         return bookRepository.findAll(pageRequest);
     }
 
-    public List<Book> searchBooksByTitle(String title) {
-        log.info("Searching book with title {}", title);
-        return bookRepository.findByTitleStartingWith(title);
+    public Page<Book> searchBooks(String query, PageRequest pageRequest) {
+        log.info("Searching books by title or author: {}", query);
+        if (query == null || query.isBlank()) {
+            return Page.empty(pageRequest);
+        }
+
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        return bookRepository.searchByTitleOrAuthor(normalized, escapeLikePattern(normalized), pageRequest);
+    }
+
+    private static String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#bookId")
     public String reserveBook(int bookId, int personId) {
         log.info("Reserving book ID {} for person ID {}", bookId, personId);
-        Book book = findBookById(bookId);
+        if (!peopleRepository.existsById(personId)) {
+            throw new IllegalArgumentException("Person not found");
+        }
 
-        if (book.getReservedBy() != null) {
+        // single conditional UPDATE: concurrent requests for the same book can not both succeed
+        if (bookRepository.reserveIfFree(bookId, personId) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new IllegalArgumentException("Book not found");
+            }
             log.error("Book is already reserved");
             return "Book is already reserved";
         }
 
-        Person person = peopleRepository.findById(personId)
-                .orElseThrow(() -> new IllegalArgumentException("Person not found"));
-
-        book.setReservedBy(person);
-        bookRepository.save(book);
-
+        libraryMetrics.recordReservations(1);
         log.info("Reserved book successfully for person with id: {}", personId);
         return null;
     }
 
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, key = "#bookId")
     public void cancelReservation(int bookId) {
         log.info("Canceling reservation for book ID: {}", bookId);
         Book book = findBookById(bookId);
@@ -170,7 +320,60 @@ public class BookService {
         return bookRepository.findByPersonIsNullAndReservedByIsNull(pageRequest);
     }
 
+    public BookPageDTO findCatalogPage(BookCursor after, int size, boolean onlyAvailable) {
+        size = clampPageSize(size);
+        log.info("Fetching catalog page after {} (size {}, only available: {})", after, size, onlyAvailable);
+        OffsetDateTime overdueBefore = OffsetDateTime.now().minusDays(10);
+        // one extra row tells whether there is a next page without issuing a COUNT query
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<BookDTO> books = onlyAvailable
+                ? bookRepository.findAvailablePageAfter(after.year(), after.bookId(), overdueBefore, limit)
+                : bookRepository.findPageAfter(after.year(), after.bookId(), overdueBefore, limit);
+
+        boolean hasNext = books.size() > size;
+        List<BookDTO> pageContent = hasNext ? books.subList(0, size) : books;
+
+        String nextCursor = null;
+        if (hasNext) {
+            BookDTO last = pageContent.get(pageContent.size() - 1);
+            nextCursor = new BookCursor(last.getYear(), last.getBookId()).encode();
+        }
+        return new BookPageDTO(pageContent, nextCursor);
+    }
+
+    public List<BookDTO> findAllListings() {
+        log.info("Fetching listings of all books");
+        return bookRepository.findAllListings(OffsetDateTime.now().minusDays(10));
+    }
+
+    public long exportCatalog(Consumer<BookDTO> consumer) {
+        log.info("Streaming catalog export");
+        long exported = 0;
+        try (Stream<BookDTO> books = bookRepository.streamAllListings(OffsetDateTime.now().minusDays(10))) {
+            Iterator<BookDTO> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                exported++;
+            }
+        }
+        log.info("Catalog export finished, {} books exported", exported);
+        return exported;
+    }
+
+    // the cached instance is shared between requests, so every caller gets its own copy
     public BookDTO getBookDetails(int id) {
+        Cache cache = cacheManager.getCache(CacheConfig.BOOK_DETAILS);
+        BookDTO cached = cache == null ? null : cache.get(id, BookDTO.class);
+        if (cached == null) {
+            cached = loadBookDetails(id);
+            if (cache != null) {
+                cache.put(id, cached);
+            }
+        }
+        return cached.copy();
+    }
+
+    private BookDTO loadBookDetails(int id) {
         log.info("Getting details of the book with id: {}", id);
         Book book = findOne(id);
         BookDTO bookDTO = convertToBookDTO(book);
@@ -187,78 +390,27 @@ public class BookService {
         return bookDTO;
     }
 
-    @Scheduled(cron = "0 0 0 * * ?")
-    @Transactional
-    public void updateOverdueBooks() {
-        log.info("Updating overdue books");
-
-        List<Book> books = bookRepository.findAll()
-                .stream()
-                .filter(book -> book.getBorrowedDate() != null)
-                .toList();
-
-        for (Book book: books) {
-            book.setDebt(calculateDebt(book));
-        }
-
-        bookRepository.updateOverdueBooks();
-    }
-
     public boolean isOverdue(Book book) {
         log.info("Checking if the book with id: {} is overdue and changing flag if needs", book.getBookId());
         OffsetDateTime date = book.getBorrowedDate();
         return date != null && date.isBefore(OffsetDateTime.now().minusDays(10));
     }
 
-    @Transactional
-    public double calculateDebt(Book book) {
-        log.info("Calculating debt for book: {}", book.getName());
-        if (book.getIsDebtPaid() == null){
-            log.info("No debt for the book: '{}'", book.getName());
-            return 0.0;
-        }
-
-        if (Boolean.TRUE.equals(book.getIsDebtPaid())) {
-            return 0.0;
-        }
-
-        OffsetDateTime borrowedDate = book.getBorrowedDate();
-
-        if (borrowedDate == null || borrowedDate.isAfter(OffsetDateTime.now())) {
-            throw new IllegalArgumentException("Invalid borrowed date.");
-        }
-
-        long overdueDays = Duration.between(borrowedDate, OffsetDateTime.now()).toDays();
-
-        double amount;
-        amount = overdueDays > 10
-                ? 10 + (overdueDays - 10) * 5.0
-                : overdueDays * 1.0;
-        book.setDebt(amount);
-        log.info("Debt counted for the book: '{}', it is = {} euro", book.getName(), book.getDebt());
-        return amount;
-    }
-
-    @Transactional
-    public double calculateTotalDebt(Person person) {
-        double totalDebt =  person.getBookList().stream()
-                .mapToDouble(this::calculateDebt)
-                .sum();
-
-        log.info("Total person's debt is: {} euro", totalDebt);
-        return totalDebt;
-    }
-
     private Book findBookById(int bookId) {
         return bookRepository.findById(bookId)
                 .orElseThrow(() -> new IllegalArgumentException("Book not found"));
     }
 
     public Book convertToBook(BookDTO bookDTO) {
-        return modelMapper.map(bookDTO, Book.class);
+        return bookMapper.toBook(bookDTO);
     }
 
     public BookDTO convertToBookDTO(Book book) {
-        return modelMapper.map(book, BookDTO.class);
+        return bookMapper.toBookDTO(book);
+    }
+
+    // page sizes requested by clients are limited to 1..MAX_PAGE_SIZE
+    public static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
 }
@@ -0,0 +1,196 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.dto.BookSuggestionDTO;
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.repositories.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory autocomplete index over book titles and authors.
+ * Every normalized title, author and single word of them is a key of a sorted map pointing to book ids,
+ * so a prefix lookup is a range scan over the map and never touches the database.
+ * Reads are lock-free. A rebuild fills fresh maps with mutable id sets and publishes them in one step;
+ * single-book updates after a commit are serialized and replace the id sets instead of mutating them.
+ */
+@Service
+@Slf4j
+public class BookSuggestionService {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final BookRepository bookRepository;
+
+    // replaced as a whole by rebuild(), so readers never see a half-built index
+    private volatile Index index = new Index(new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>());
+
+    private record Index(ConcurrentSkipListMap<String, Set<Integer>> terms, Map<Integer, BookSuggestionDTO> books) {
+    }
+
+    public BookSuggestionService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        log.info("Building book suggestion index");
+        Index built;
+        // holds the monitor so that no single-book update is lost between the snapshot and the publication
+        synchronized (this) {
+            TreeMap<String, Set<Integer>> terms = new TreeMap<>();
+            Map<Integer, BookSuggestionDTO> books = new HashMap<>();
+            try (Stream<BookSuggestionDTO> suggestions = bookRepository.streamSuggestions()) {
+                suggestions.forEach(suggestion -> {
+                    books.put(suggestion.getBookId(), suggestion);
+                    for (String term : termsOf(suggestion)) {
+                        terms.computeIfAbsent(term, key -> new TreeSet<>()).add(suggestion.getBookId());
+                    }
+                });
+            }
+            terms.replaceAll((term, ids) -> Collections.unmodifiableSet(ids));
+            // built from a sorted map in linear time
+            built = new Index(new ConcurrentSkipListMap<>(terms), new ConcurrentHashMap<>(books));
+            index = built;
+        }
+        log.info("Book suggestion index built: {} books, {} terms", built.books().size(), built.terms().size());
+    }
+
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Index current = index;
+        Set<Integer> bookIds = new LinkedHashSet<>();
+        for (Set<Integer> ids : current.terms().subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            for (Integer id : ids) {
+                bookIds.add(id);
+                if (bookIds.size() == limit) {
+                    return toSuggestions(current, bookIds);
+                }
+            }
+        }
+        return toSuggestions(current, bookIds);
+    }
+
+    public void put(Book book) {
+        BookSuggestionDTO suggestion = new BookSuggestionDTO(book.getBookId(), book.getName(), book.getAuthor());
+        afterCommit(() -> {
+            synchronized (this) {
+                removeTerms(suggestion.getBookId());
+                add(suggestion);
+            }
+        });
+    }
+
+    public void remove(int bookId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                removeTerms(bookId);
+            }
+        });
+    }
+
+    public int size() {
+        return index.books().size();
+    }
+
+    private static List<BookSuggestionDTO> toSuggestions(Index current, Set<Integer> bookIds) {
+        List<BookSuggestionDTO> result = new ArrayList<>(bookIds.size());
+        for (Integer id : bookIds) {
+            BookSuggestionDTO suggestion = current.books().get(id);
+            if (suggestion != null) {
+                result.add(suggestion);
+            }
+        }
+        return result;
+    }
+
+    // single-book update, copy-on-write; callers hold the monitor
+    private void add(BookSuggestionDTO suggestion) {
+        Map<Integer, BookSuggestionDTO> books = index.books();
+        ConcurrentSkipListMap<String, Set<Integer>> terms = index.terms();
+        books.put(suggestion.getBookId(), suggestion);
+        for (String term : termsOf(suggestion)) {
+            Set<Integer> ids = terms.get(term);
+            Set<Integer> updated = ids == null ? new TreeSet<>() : new TreeSet<>(ids);
+            updated.add(suggestion.getBookId());
+            terms.put(term, Collections.unmodifiableSet(updated));
+        }
+    }
+
+    // callers hold the monitor
+    private void removeTerms(int bookId) {
+        ConcurrentSkipListMap<String, Set<Integer>> terms = index.terms();
+        BookSuggestionDTO previous = index.books().remove(bookId);
+        if (previous == null) {
+            return;
+        }
+
+        for (String term : termsOf(previous)) {
+            Set<Integer> ids = terms.get(term);
+            if (ids == null) {
+                continue;
+            }
+
+            Set<Integer> updated = new TreeSet<>(ids);
+            updated.remove(bookId);
+            if (updated.isEmpty()) {
+                terms.remove(term);
+            } else {
+                terms.put(term, Collections.unmodifiableSet(updated));
+            }
+        }
+    }
+
+    private static Set<String> termsOf(BookSuggestionDTO suggestion) {
+        Set<String> result = new HashSet<>();
+        for (String value : new String[]{suggestion.getName(), suggestion.getAuthor()}) {
+            String normalized = normalize(value);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            result.add(normalized);
+            result.addAll(Arrays.asList(normalized.split(" ")));
+        }
+        return result;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String withoutDiacritics = DIACRITICS.matcher(decomposed).replaceAll("");
+        return WHITESPACE.matcher(withoutDiacritics.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // keep the index in line with committed data only; outside a transaction apply immediately
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.models.PersonDebt;
+import com.danir.libraryAPI.repositories.PersonDebtRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Per-person debt totals read by profile and payment pages with one primary key lookup.
+ * Every operation that changes the debt of a loan refreshes the borrower's row in its own transaction,
+ * so the total never disagrees with the committed books.
+ * Refreshes lock the person rows first: under READ COMMITTED two transactions changing loans of the same person
+ * would otherwise each sum a snapshot missing the other's change, and the later upsert would win with a stale total.
+ */
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+public class DebtLedgerService {
+
+    private final PersonDebtRepository personDebtRepository;
+
+    public DebtLedgerService(PersonDebtRepository personDebtRepository) {
+        this.personDebtRepository = personDebtRepository;
+    }
+
+    public Optional<PersonDebt> find(int personId) {
+        return personDebtRepository.findById(personId);
+    }
+
+    // people who never owed anything have no row yet
+    public double balanceOf(int personId) {
+        return find(personId).map(PersonDebt::getBalance).orElse(0.0);
+    }
+
+    @Transactional
+    public void refresh(Collection<Integer> personIds) {
+        if (personIds.isEmpty()) {
+            return;
+        }
+        personDebtRepository.lockPeople(personIds);
+        int refreshed = personDebtRepository.refresh(personIds, OffsetDateTime.now());
+        log.debug("Debt ledger refreshed for {} people", refreshed);
+    }
+
+    // one aggregate over all current loans, run after the nightly debt recalculation
+    @Transactional
+    public int rebuild() {
+        personDebtRepository.lockAllPeople();
+        int refreshed = personDebtRepository.rebuild(OffsetDateTime.now());
+        log.info("Debt ledger rebuilt for {} people", refreshed);
+        return refreshed;
+    }
+}
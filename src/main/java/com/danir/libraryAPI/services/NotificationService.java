@@ -1,17 +1,24 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.dto.OverdueDigestRowDTO;
+import com.danir.libraryAPI.dto.OverdueNoticeDTO;
 import com.danir.libraryAPI.rabbitmq.NotificationMessage;
 import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.OutboxMessage;
 import com.danir.libraryAPI.rabbitmq.NotificationPublisher;
 import com.danir.libraryAPI.repositories.BookRepository;
-import org.springframework.data.domain.Page;
+import com.danir.libraryAPI.repositories.OutboxMessageRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @Slf4j
@@ -19,64 +26,235 @@ public class NotificationService {
 
     private final NotificationPublisher notificationPublisher;
     private final BookRepository bookRepository;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final int batchSize;
+    private final boolean overdueDigest;
 
-    public NotificationService(BookRepository bookRepository, NotificationPublisher notificationPublisher) {
+    public NotificationService(BookRepository bookRepository, NotificationPublisher notificationPublisher,
+                               OutboxMessageRepository outboxMessageRepository,
+                               @Value("${library.notifications.batch-size:500}") int batchSize,
+                               @Value("${library.notifications.overdue-digest:false}") boolean overdueDigest) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
         this.bookRepository = bookRepository;
         this.notificationPublisher = notificationPublisher;
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.batchSize = batchSize;
+        this.overdueDigest = overdueDigest;
     }
 
+    /**
+     * Stores the "book is free" notification in the outbox as part of the caller's transaction.
+     * It is published by {@link OutboxRelayService} only if the release commits.
+     */
+    @Transactional
     public void notifyBookReleased(Book book) {
-        if (book.getReservedBy() != null) {
-            try {
-                String email = book.getReservedBy().getEmail();
-                String fullName = book.getReservedBy().getFullName();
+        OutboxMessage outboxMessage = buildReleaseNotification(book);
+        if (outboxMessage == null) {
+            return;
+        }
+        outboxMessageRepository.save(outboxMessage);
+        log.info("Release notification stored in the outbox for book: {}", book.getName());
+    }
 
-                if (email == null || fullName == null) {
-                    log.warn("Email or fullName is null for reserved book: {}", book.getName());
-                    return;
-                }
+    @Transactional
+    public void notifyBooksReleased(List<Book> books) {
+        List<OutboxMessage> outboxMessages = new ArrayList<>();
+        for (Book book : books) {
+            OutboxMessage outboxMessage = buildReleaseNotification(book);
+            if (outboxMessage != null) {
+                outboxMessages.add(outboxMessage);
+            }
+        }
 
-                String subject = String.format("The book: %s is free", book.getName());
-                String message = String.format("Hello, dear %s. The book '%s', reserved by you, is now free.",
-                        fullName, book.getName());
+        if (!outboxMessages.isEmpty()) {
+            outboxMessageRepository.saveAll(outboxMessages);
+            log.info("{} release notifications stored in the outbox", outboxMessages.size());
+        }
+    }
 
-                NotificationMessage notificationMessage = new NotificationMessage(email, subject, message);
-                notificationPublisher.sendNotification(notificationMessage);
-                log.info("Notification passed to notificationPublisher for book: {}", book.getName());
-            } catch (Exception e){
-                log.error("Failed to send notification for book: {}", book.getName(), e);
-            }
+    // null when nobody is waiting for the book
+    private OutboxMessage buildReleaseNotification(Book book) {
+        if (book.getReservedBy() == null) {
+            return null;
         }
+
+        String email = book.getReservedBy().getEmail();
+        String fullName = book.getReservedBy().getFullName();
+
+        if (email == null || fullName == null) {
+            log.warn("Email or fullName is null for reserved book: {}", book.getName());
+            return null;
+        }
+
+        String subject = String.format("The book: %s is free", book.getName());
+        String message = String.format("Hello, dear %s. The book '%s', reserved by you, is now free.",
+                fullName, book.getName());
+
+        return new OutboxMessage(email, subject, message);
     }
 
 
+    /**
+     * Notifies borrowers of overdue books. Overdue books are read in keyset pages of batchSize rows
+     * together with the borrower, and every batch of notifications is published as one confirmed batch.
+     * With library.notifications.overdue-digest every borrower gets one digest listing all overdue books
+     * and the total debt instead of one notification per book.
+     * A batch that fails to publish is counted as failed and the run continues with the next one.
+     */
     @Scheduled(cron = "0 0 12 * * ?")
-    public void sendOverdueNotifications() {
-        OffsetDateTime tenDaysAgo = OffsetDateTime.now().minusDays(10);
-        PageRequest pageRequest = PageRequest.of(0, 50);
-
-        Page<Book> overdueBooksPage = bookRepository.findOverdueBooks(tenDaysAgo, pageRequest);
-        while (overdueBooksPage.hasContent()) {
-            for (Book book : overdueBooksPage.getContent()) {
-                if (book.getPerson() != null && book.getPerson().getEmail() != null) {
-                    try {
-                        String email = book.getPerson().getEmail();
-                        String fullName = book.getPerson().getFullName();
-                        String subject = "Overdue Book Notification";
-                        String message = String.format("Hello, dear %s. You have an overdue book: '%s'. From today a fee will be 5 euro/day", fullName, book.getName());
-
-                        NotificationMessage notificationMessage = new NotificationMessage(email, subject, message);
-                        notificationPublisher.sendNotification(notificationMessage);
-
-                        log.info("Notification sent to RabbitMQ for overdue book: {}", book.getName());
-                    } catch (Exception e) {
-                        log.error("Failed to send message to RabbitMQ for book: {}. Error: {}", book.getName(), e.getMessage());
+    public OverdueNotificationReport sendOverdueNotifications() {
+        log.info("Sending overdue notifications{}", overdueDigest ? " as digests" : "");
+        long startedAt = System.nanoTime();
+        OffsetDateTime overdueBefore = OffsetDateTime.now().minusDays(10);
+
+        BatchPublisher batchPublisher = overdueDigest
+                ? publishOverdueDigests(overdueBefore)
+                : publishOverdueNotices(overdueBefore);
+
+        long durationMs = (System.nanoTime() - startedAt) / 1_000_000;
+        double perSecond = durationMs == 0 ? batchPublisher.published : batchPublisher.published * 1000.0 / durationMs;
+        log.info("Overdue notifications finished: {} published for {} books, {} failed in {} batches, {} ms ({} messages/s)",
+                batchPublisher.published, batchPublisher.books, batchPublisher.failed, batchPublisher.batches,
+                durationMs, String.format("%.1f", perSecond));
+        return new OverdueNotificationReport(batchPublisher.published, batchPublisher.failed, batchPublisher.batches,
+                batchPublisher.books, durationMs);
+    }
+
+    private BatchPublisher publishOverdueNotices(OffsetDateTime overdueBefore) {
+        PageRequest limit = PageRequest.of(0, batchSize);
+        BatchPublisher batchPublisher = new BatchPublisher();
+
+        int afterId = 0;
+        List<OverdueNoticeDTO> notices = bookRepository.findOverdueNoticesAfter(overdueBefore, afterId, limit);
+        while (!notices.isEmpty()) {
+            List<NotificationMessage> notificationMessages = new ArrayList<>(notices.size());
+            for (OverdueNoticeDTO notice : notices) {
+                notificationMessages.add(buildOverdueNotification(notice));
+            }
+            batchPublisher.books += notices.size();
+            batchPublisher.publish(notificationMessages);
+
+            if (notices.size() < batchSize) {
+                break;
+            }
+            afterId = notices.get(notices.size() - 1).getBookId();
+            notices = bookRepository.findOverdueNoticesAfter(overdueBefore, afterId, limit);
+        }
+        return batchPublisher;
+    }
+
+    // rows come ordered by borrower, so a digest is complete as soon as the next borrower's row shows up;
+    // the digest of the last borrower of a page is carried over, its books may continue on the next page
+    private BatchPublisher publishOverdueDigests(OffsetDateTime overdueBefore) {
+        PageRequest limit = PageRequest.of(0, batchSize);
+        BatchPublisher batchPublisher = new BatchPublisher();
+        List<NotificationMessage> digests = new ArrayList<>(batchSize);
+        OverdueDigest current = null;
+
+        List<OverdueDigestRowDTO> rows = bookRepository.findOverdueDigestRowsAfter(overdueBefore, 0, 0, limit);
+        while (!rows.isEmpty()) {
+            for (OverdueDigestRowDTO row : rows) {
+                if (current == null || current.personId != row.getPersonId()) {
+                    if (current != null) {
+                        digests.add(current.toNotification());
                     }
+                    current = new OverdueDigest(row);
+                }
+                current.add(row);
+                batchPublisher.books++;
+
+                if (digests.size() == batchSize) {
+                    batchPublisher.publish(digests);
+                    digests = new ArrayList<>(batchSize);
                 }
             }
-            pageRequest = pageRequest.next();
-            overdueBooksPage = bookRepository.findOverdueBooks(tenDaysAgo, pageRequest);
+
+            if (rows.size() < batchSize) {
+                break;
+            }
+            OverdueDigestRowDTO last = rows.get(rows.size() - 1);
+            rows = bookRepository.findOverdueDigestRowsAfter(overdueBefore, last.getPersonId(), last.getBookId(), limit);
+        }
+
+        if (current != null) {
+            digests.add(current.toNotification());
+        }
+        batchPublisher.publish(digests);
+        return batchPublisher;
+    }
+
+    private NotificationMessage buildOverdueNotification(OverdueNoticeDTO notice) {
+        String subject = "Overdue Book Notification";
+        String message = String.format("Hello, dear %s. You have an overdue book: '%s'. From today a fee will be 5 euro/day",
+                notice.getFullName(), notice.getBookName());
+        return new NotificationMessage(notice.getEmail(), subject, message);
+    }
+
+    private class BatchPublisher {
+        private int published;
+        private int failed;
+        private int batches;
+        private int books;
+
+        void publish(List<NotificationMessage> notificationMessages) {
+            if (notificationMessages.isEmpty()) {
+                return;
+            }
+            batches++;
+            try {
+                notificationPublisher.sendNotifications(notificationMessages);
+                published += notificationMessages.size();
+            } catch (Exception e) {
+                failed += notificationMessages.size();
+                log.error("Failed to publish batch {} of {} overdue notifications: {}",
+                        batches, notificationMessages.size(), e.getMessage());
+            }
         }
     }
-}
 
+    private static final class OverdueDigest {
+        // a digest lists at most this many titles, the count and the total debt cover all books
+        private static final int MAX_LISTED_BOOKS = 20;
+
+        private final int personId;
+        private final String email;
+        private final String fullName;
+        private final List<String> bookNames = new ArrayList<>();
+        private int bookCount;
+        private double totalDebt;
+
+        OverdueDigest(OverdueDigestRowDTO row) {
+            this.personId = row.getPersonId();
+            this.email = row.getEmail();
+            this.fullName = row.getFullName();
+        }
+
+        void add(OverdueDigestRowDTO row) {
+            bookCount++;
+            if (bookNames.size() < MAX_LISTED_BOOKS) {
+                bookNames.add("'" + row.getBookName() + "'");
+            }
+            if (row.getDebt() != null) {
+                totalDebt += row.getDebt();
+            }
+        }
+
+        NotificationMessage toNotification() {
+            String subject = bookCount == 1 ? "Overdue Book Notification"
+                    : String.format("Overdue Books Notification: %d books", bookCount);
+            String books = String.join(", ", bookNames);
+            if (bookCount > bookNames.size()) {
+                books += String.format(" and %d more", bookCount - bookNames.size());
+            }
+            String message = String.format("Hello, dear %s. You have %d overdue %s: %s. Your total debt is %.2f euro. " +
+                            "From today a fee will be 5 euro/day for every overdue book",
+                    fullName, bookCount, bookCount == 1 ? "book" : "books", books, totalDebt);
+            return new NotificationMessage(email, subject, message);
+        }
+    }
+
+    public record OverdueNotificationReport(int published, int failed, int batches, int books, long durationMs) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.models.OutboxMessage;
+import com.danir.libraryAPI.rabbitmq.NotificationMessage;
+import com.danir.libraryAPI.rabbitmq.NotificationPublisher;
+import com.danir.libraryAPI.repositories.OutboxMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the notification outbox to RabbitMQ. Every batch is locked, published with broker confirms
+ * and deleted in one transaction: if publishing fails the rows stay and are sent on the next run,
+ * if the commit fails after publishing the consumer drops the duplicates by message id.
+ */
+@Service
+@Slf4j
+public class OutboxRelayService {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final NotificationPublisher notificationPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public OutboxRelayService(OutboxMessageRepository outboxMessageRepository,
+                              NotificationPublisher notificationPublisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${library.outbox.batch-size:200}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.notificationPublisher = notificationPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${library.outbox.relay-interval-ms:1000}")
+    public int relay() {
+        int relayed = 0;
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> relayBatch());
+                relayed += published == null ? 0 : published;
+            } while (published != null && published == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay stopped after {} messages, the rest is retried on the next run: {}",
+                    relayed, e.getMessage());
+        }
+
+        if (relayed > 0) {
+            log.info("Relayed {} outbox messages to RabbitMQ", relayed);
+        }
+        return relayed;
+    }
+
+    private int relayBatch() {
+        List<OutboxMessage> outboxMessages = outboxMessageRepository.findBatchForRelay(PageRequest.of(0, batchSize));
+        if (outboxMessages.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, NotificationMessage> notificationMessages = new LinkedHashMap<>();
+        for (OutboxMessage outboxMessage : outboxMessages) {
+            notificationMessages.put(outboxMessage.getMessageId(), new NotificationMessage(
+                    outboxMessage.getToEmail(), outboxMessage.getSubject(), outboxMessage.getMessage()));
+        }
+
+        notificationPublisher.sendNotificationsWithIds(notificationMessages);
+        outboxMessageRepository.deleteAllInBatch(outboxMessages);
+        return outboxMessages.size();
+    }
+}
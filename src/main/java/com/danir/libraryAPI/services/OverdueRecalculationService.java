@@ -0,0 +1,62 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.batch.JobReport;
+import com.danir.libraryAPI.batch.PartitionedJobRunner;
+import com.danir.libraryAPI.repositories.BookRepository;
+import com.danir.libraryAPI.util.CacheConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Nightly overdue flag and debt recalculation.
+ * Books are never loaded into the persistence context: every id range of the catalog is updated
+ * by one set-based statement, and the ranges are processed in parallel by the {@link PartitionedJobRunner}.
+ * The debt ledger is rebuilt from the new debts once all ranges are done.
+ * A run interrupted by a shutdown is finished right after the restart with the cutoff of its original start.
+ */
+@Service
+@Slf4j
+public class OverdueRecalculationService {
+
+    static final String JOB_NAME = "overdue-recalculation";
+
+    private final BookRepository bookRepository;
+    private final PartitionedJobRunner jobRunner;
+    private final DebtLedgerService debtLedgerService;
+
+    public OverdueRecalculationService(BookRepository bookRepository, PartitionedJobRunner jobRunner,
+                                       DebtLedgerService debtLedgerService) {
+        this.bookRepository = bookRepository;
+        this.jobRunner = jobRunner;
+        this.debtLedgerService = debtLedgerService;
+    }
+
+    // the bulk updates bypass the per-book evictions, overdue flags of cached details change with them
+    @Scheduled(cron = "0 0 0 * * ?")
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true)
+    public JobReport updateOverdueBooks() {
+        log.info("Updating overdue books");
+        JobReport report = jobRunner.run(JOB_NAME, this::recalculate);
+
+        // per-person totals follow the new per-loan debts
+        debtLedgerService.rebuild();
+        return report;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true)
+    public void resumeInterruptedRun() {
+        jobRunner.resume(JOB_NAME, this::recalculate)
+                .ifPresent(report -> debtLedgerService.rebuild());
+    }
+
+    private int recalculate(int fromId, int toId, OffsetDateTime runStartedAt) {
+        return bookRepository.recalculateOverdueAndDebt(fromId, toId, runStartedAt, runStartedAt.minusDays(10));
+    }
+}
@@ -1,147 +1,236 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Payment;
 import com.danir.libraryAPI.models.Person;
+import com.danir.libraryAPI.models.PersonDebt;
+import com.danir.libraryAPI.payments.PaymentIntentResult;
+import com.danir.libraryAPI.payments.PaymentQuote;
+import com.danir.libraryAPI.payments.StripeGateway;
+import com.danir.libraryAPI.repositories.BookRepository;
 import com.danir.libraryAPI.repositories.PaymentRepository;
-import com.danir.libraryAPI.util.StripeConfig;
-import com.stripe.Stripe;
+import com.danir.libraryAPI.util.CacheConfig;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
-import com.stripe.param.PaymentIntentCreateParams;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Stripe is always called outside of a transaction: intents are created from books the caller already loaded,
+ * and a confirmation first verifies the intent remotely and only then records the payment
+ * in one short transaction. Confirmations are idempotent per payment intent and only accepted for the person
+ * and books the intent was created for.
+ * Paying all debts charges the balance of the person's debt ledger, no loan is recalculated for it.
+ */
 @Service
 @Slf4j
+@Timed(value = "library.service", histogram = true)
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final BookService bookService;
-    private final StripeConfig stripeConfig;
-
-    public PaymentService(PaymentRepository paymentRepository, BookService bookService, StripeConfig stripeConfig) {
+    private final StripeGateway stripeGateway;
+    private final BookRepository bookRepository;
+    private final LibraryMetrics libraryMetrics;
+    private final DebtLedgerService debtLedgerService;
+    private final TransactionTemplate transactionTemplate;
+
+    public PaymentService(PaymentRepository paymentRepository, BookService bookService, StripeGateway stripeGateway,
+                          BookRepository bookRepository, LibraryMetrics libraryMetrics,
+                          DebtLedgerService debtLedgerService, PlatformTransactionManager transactionManager) {
         this.paymentRepository = paymentRepository;
         this.bookService = bookService;
-        this.stripeConfig = stripeConfig;
+        this.stripeGateway = stripeGateway;
+        this.bookRepository = bookRepository;
+        this.libraryMetrics = libraryMetrics;
+        this.debtLedgerService = debtLedgerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional(rollbackFor = StripeException.class)
-    public String createPaymentIntentForBook(Book book) throws StripeException {
+    public PaymentIntentResult createPaymentIntentForBook(Book book) throws StripeException {
         log.info("Creating payment intent for book: {}", book.getName());
-        validateBook(book);
-
-        long daysHeld = ChronoUnit.DAYS.between(book.getBorrowedDate(), OffsetDateTime.now());
-        double amount = calculateAmount(daysHeld);
-
-        log.debug("Calculated amount for book '{}': {}", book.getName(), amount);
-
-        // Create payment intent in stripe
-        String clientSecret = createStripePaymentIntent(amount, "Payment for book: " + book.getName());
-
+        PaymentQuote quote = quoteForBook(book);
+        PaymentIntent paymentIntent = stripeGateway.createPaymentIntent(quote);
         log.info("Payment intent created successfully for book: {}", book.getName());
-        return clientSecret;
+        return toResult(paymentIntent, quote);
     }
 
-    @Transactional(rollbackFor = StripeException.class)
-    public String createPaymentIntentForAllBooks(List<Book> books) throws StripeException {
-        log.info("Creating payment intent for all books");
-        double totalAmount = books.stream()
-                .filter(book -> !book.getIsDebtPaid())
-                .mapToDouble(book -> calculateAmount(ChronoUnit.DAYS.between(book.getBorrowedDate(), OffsetDateTime.now())))
-                .sum();
+    // validation errors are thrown right away, Stripe errors complete the future exceptionally
+    public CompletableFuture<PaymentIntentResult> createPaymentIntentForBookAsync(Book book) {
+        log.info("Creating payment intent asynchronously for book: {}", book.getName());
+        PaymentQuote quote = quoteForBook(book);
+        return stripeGateway.createPaymentIntentAsync(quote)
+                .thenApply(paymentIntent -> toResult(paymentIntent, quote));
+    }
 
-        if (totalAmount == 0) {
-            log.warn("No unpaid books found to create payment intent.");
-            throw new IllegalStateException("No unpaid books to pay for.");
-        }
+    public PaymentIntentResult createPaymentIntentForAllBooks(int personId) throws StripeException {
+        log.info("Creating payment intent for all books of person ID: {}", personId);
+        PaymentQuote quote = quoteForAllBooks(personId);
+        return toResult(stripeGateway.createPaymentIntent(quote), quote);
+    }
 
-        log.debug("Total amount calculated for all books: {}", totalAmount);
-        return createStripePaymentIntent(totalAmount, "Payment for multiple books");
+    public CompletableFuture<PaymentIntentResult> createPaymentIntentForAllBooksAsync(int personId) {
+        log.info("Creating payment intent asynchronously for all books of person ID: {}", personId);
+        PaymentQuote quote = quoteForAllBooks(personId);
+        return stripeGateway.createPaymentIntentAsync(quote)
+                .thenApply(paymentIntent -> toResult(paymentIntent, quote));
     }
 
-    @Transactional(rollbackFor = Exception.class)
     public void confirmPayment(String paymentIntentId, Person person, Book book) throws StripeException {
         log.info("Confirming payment for book: {}", book.getName());
-        verifyPayment(paymentIntentId);
+        PaymentIntent paymentIntent = verifyPayment(paymentIntentId, person.getPersonId());
+        if (!PaymentQuote.bookIdsOf(paymentIntent.getMetadata()).equals(List.of(book.getBookId()))) {
+            log.error("Payment intent {} was not created for book ID: {}", paymentIntentId, book.getBookId());
+            throw new IllegalStateException("Payment was not made for this book.");
+        }
 
-        long daysHeld = ChronoUnit.DAYS.between(book.getBorrowedDate(), OffsetDateTime.now());
-        double amount = calculateAmount(daysHeld);
+        // the amount Stripe charged, quoted when the intent was created
+        double amount = paymentIntent.getAmount() / 100.0;
 
-        Payment payment = new Payment(person, book.getName(), amount, OffsetDateTime.now());
-        paymentRepository.save(payment);
+        confirmOnce(paymentIntentId, () -> {
+            // reloaded and locked here: the book passed in may be stale, e.g. paid by a "pay all" meanwhile
+            List<Book> books = bookRepository.findUnpaidBooksOfPerson(person.getPersonId(), List.of(book.getBookId()));
+            if (books.isEmpty()) {
+                log.warn("Book ID {} paid with intent {} is no longer an unpaid loan of {}",
+                        book.getBookId(), paymentIntentId, person.getFullName());
+            }
 
-        log.debug("Payment saved for book '{}' with amount: {}", book.getName(), amount);
-        markBookAsPaid(book);
+            // the money was taken, so the payment is recorded even if the loan is gone
+            Payment payment = new Payment(person, book.getName(), amount, OffsetDateTime.now());
+            payment.setPaymentIntentId(paymentIntentId);
+            paymentRepository.saveAndFlush(payment);
 
-        log.info("Payment confirmed and book marked as paid: {}", book.getName());
+            log.debug("Payment saved for book '{}' with amount: {}", book.getName(), amount);
+            books.forEach(this::markBookAsPaid);
+            debtLedgerService.refresh(List.of(person.getPersonId()));
+            log.info("Payment confirmed and book marked as paid: {}", book.getName());
+        });
     }
 
-    @Transactional(rollbackFor = Exception.class)
+    // the books are marked paid inside one transaction, the details of all of them are dropped after it
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true)
     public void confirmPaymentForAllBooks(String paymentIntentId, Person person) throws StripeException {
         log.info("Confirming payment for all books of person: {}", person.getFullName());
-        verifyPayment(paymentIntentId);
-
-        OffsetDateTime now = OffsetDateTime.now();
-        List<Book> books = person.getBookList().stream()
-                .filter(book -> !book.getIsDebtPaid()).toList();
+        PaymentIntent paymentIntent = verifyPayment(paymentIntentId, person.getPersonId());
+        // the ledger balance charged when the intent was created, and the loans it was made of
+        double totalAmount = paymentIntent.getAmount() / 100.0;
+        List<Integer> coveredBookIds = PaymentQuote.bookIdsOf(paymentIntent.getMetadata());
+
+        confirmOnce(paymentIntentId, () -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            // books returned or paid separately since the intent was created are not touched
+            List<Book> books = coveredBookIds.isEmpty() ? List.of()
+                    : bookRepository.findUnpaidBooksOfPerson(person.getPersonId(), coveredBookIds);
+            if (books.size() < coveredBookIds.size()) {
+                log.warn("{} of {} books paid with intent {} are no longer unpaid loans of {}",
+                        coveredBookIds.size() - books.size(), coveredBookIds.size(), paymentIntentId, person.getFullName());
+            }
 
-        double totalAmount = books.stream()
-                .mapToDouble(book -> calculateAmount(ChronoUnit.DAYS.between(book.getBorrowedDate(), now)))
-                .sum();
+            // the money was taken, so the payment is recorded even if no covered loan is left
+            String bookTitles = books.stream().map(Book::getName).collect(Collectors.joining(","));
+            Payment payment = new Payment(person, bookTitles, totalAmount, now);
+            payment.setPaymentIntentId(paymentIntentId);
+            paymentRepository.saveAndFlush(payment);
 
-        if (totalAmount == 0) {
-            log.warn("No unpaid books found for person: {}", person.getFullName());
-            throw new IllegalStateException("No unpaid books to confirm payment for.");
-        }
+            log.debug("Payment saved for books: {} with total amount: {}", bookTitles, totalAmount);
 
-        StringBuilder stringBuilder = new StringBuilder();
-        for (Book book : books) {
-            stringBuilder.append(book.getName()).append(",");
-        }
-        if (!stringBuilder.isEmpty()) {
-            stringBuilder.deleteCharAt(stringBuilder.length() - 1); // delete last ','
-        }
+            for (Book book : books) {
+                markBookAsPaid(book);
+            }
+            debtLedgerService.refresh(List.of(person.getPersonId()));
 
-        Payment payment = new Payment(person, stringBuilder.toString(), totalAmount, now);
-        paymentRepository.save(payment);
+            log.info("Payment confirmed and all books marked as paid for person: {}", person.getFullName());
+        });
+    }
 
-        log.debug("Payment saved for books: {} with total amount: {}", stringBuilder, totalAmount);
+    /**
+     * Runs the confirmation in one transaction unless the intent is already recorded.
+     * The payment row is flushed before any book changes, so of two concurrent confirmations of one intent
+     * the second waits on the unique payment_intent_id index and is rolled back once the first commits.
+     */
+    private void confirmOnce(String paymentIntentId, Runnable confirmation) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (paymentRepository.existsByPaymentIntentId(paymentIntentId)) {
+                    log.info("Payment intent {} is already confirmed", paymentIntentId);
+                    return;
+                }
+                confirmation.run();
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!paymentRepository.existsByPaymentIntentId(paymentIntentId)) {
+                throw e;
+            }
+            log.info("Payment intent {} was confirmed concurrently", paymentIntentId);
+        }
+    }
 
-        for (Book book : books) {
-            markBookAsPaid(book);
+    // the intent must have been paid in full and created for this person
+    PaymentIntent verifyPayment(String paymentIntentId, int personId) throws StripeException {
+        log.debug("Verifying payment with ID: {}", paymentIntentId);
+        PaymentIntent paymentIntent = stripeGateway.retrievePaymentIntent(paymentIntentId);
+        if (!"succeeded".equals(paymentIntent.getStatus())) {
+            log.error("Payment not successful for payment intent ID: {}", paymentIntentId);
+            throw new IllegalStateException("Payment not successful.");
         }
 
-        log.info("Payment confirmed and all books marked as paid for person: {}", person.getFullName());
+        Map<String, String> metadata = paymentIntent.getMetadata();
+        if (metadata == null || !String.valueOf(personId).equals(metadata.get(PaymentQuote.PERSON_ID_METADATA))) {
+            log.error("Payment intent {} was not created for person ID: {}", paymentIntentId, personId);
+            throw new IllegalStateException("Payment was not made by this person.");
+        }
+        if (paymentIntent.getAmount() == null || paymentIntent.getAmount() <= 0
+                || !paymentIntent.getAmount().equals(paymentIntent.getAmountReceived())) {
+            log.error("Payment intent {} received {} of {}", paymentIntentId,
+                    paymentIntent.getAmountReceived(), paymentIntent.getAmount());
+            throw new IllegalStateException("Payment amount does not match.");
+        }
+        return paymentIntent;
     }
 
-    private String createStripePaymentIntent(double amount, String description) throws StripeException {
-        log.debug("Creating Stripe payment intent with amount: {} and description: {}", amount, description);
-        Stripe.apiKey = stripeConfig.getSecretKey();
+    private PaymentQuote quoteForBook(Book book) {
+        validateBook(book);
 
-        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                .setAmount((long) (amount * 100)) // В центах
-                .setCurrency(stripeConfig.getCurrency())
-                .setDescription(description)
-                .build();
+        long daysHeld = ChronoUnit.DAYS.between(book.getBorrowedDate(), OffsetDateTime.now());
+        double amount = calculateAmount(daysHeld);
+        log.debug("Calculated amount for book '{}': {}", book.getName(), amount);
 
-        return PaymentIntent.create(params).getClientSecret();
+        return PaymentQuote.of("Payment for book: " + book.getName(), amount,
+                "book:" + book.getBookId() + ":" + book.getBorrowedDate().toEpochSecond(),
+                book.getPerson().getPersonId(), List.of(book.getBookId()));
     }
 
-   void verifyPayment(String paymentIntentId) throws StripeException {
-        log.debug("Verifying payment with ID: {}", paymentIntentId);
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        if (!"succeeded".equals(paymentIntent.getStatus())) {
-            log.error("Payment not successful for payment intent ID: {}", paymentIntentId);
-//            throw new StripeException("Payment not successful.");
-        }
+    private PaymentQuote quoteForAllBooks(int personId) {
+        PersonDebt personDebt = debtLedgerService.find(personId)
+                .filter(debt -> debt.getBalance() > 0)
+                .orElseThrow(() -> {
+                    log.warn("No unpaid books found to create payment intent.");
+                    return new IllegalStateException("No unpaid books to pay for.");
+                });
+
+        log.debug("Total amount of all books from the debt ledger: {}", personDebt.getBalance());
+        // the ledger row changes with every payment, return and nightly run, and so does the key
+        return PaymentQuote.of("Payment for multiple books", personDebt.getBalance(),
+                "person:" + personId + ":" + personDebt.getUpdatedAt().toInstant().toEpochMilli(),
+                personId, bookRepository.findUnpaidBookIdsOfPerson(personId));
+    }
+
+    private static PaymentIntentResult toResult(PaymentIntent paymentIntent, PaymentQuote quote) {
+        return new PaymentIntentResult(paymentIntent.getId(), paymentIntent.getClientSecret(), quote.amount());
     }
 
     private void validateBook(Book book) {
@@ -149,6 +238,10 @@ public class PaymentService {
             log.error("Borrowed date is not set for book: {}", book.getName());
             throw new IllegalArgumentException("Borrowed date is not set for the book.");
         }
+        if (book.getPerson() == null) {
+            log.error("Book '{}' is not borrowed by anyone.", book.getName());
+            throw new IllegalArgumentException("The book is not borrowed.");
+        }
         if (book.getIsDebtPaid()) {
             log.warn("Book '{}' is already paid.", book.getName());
             throw new IllegalStateException("The book is already paid.");
@@ -165,30 +258,31 @@ public class PaymentService {
         log.info("Book '{}' marked as paid successfully.", book.getName());
     }
 
-    private double calculateAmount(long daysHeld) {
+    double calculateAmount(long daysHeld) {
         double amount = (daysHeld <= 10) ? daysHeld * 1.0 : 10 + (daysHeld - 10) * 5.0;
         log.debug("Calculated amount for {} days: {}", daysHeld, amount);
         return amount;
     }
 
-    @Transactional
+    /**
+     * Books that are still borrowed more than 24 hours after payment owe again.
+     * One bulk update over the partial index of paid, still borrowed books: the cost follows the number
+     * of such loans, not the size of the catalog. Their debt accrues again with the next nightly recalculation.
+     */
     @Scheduled(cron = "0 0 0 * * *")
-    public void checkIfBookReturnedAfterPayment() {
+    @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true)
+    public int checkIfBookReturnedAfterPayment() {
         log.info("Running scheduled task to check if books are returned after payment.");
-        List<Book> allBooks = bookService.findAll()
-                .stream()
-                .filter(book -> book.getPerson() != null)
-                .toList();
-
-        for (Book book : allBooks) {
-            long hoursSincePayment = ChronoUnit.HOURS.between(book.getPaymentDate().toInstant(), Instant.now());
-
-            if (hoursSincePayment > 24 && book.getPaymentDate() != null) {
-                log.warn("Book '{}' was not returned within 24 hours after payment.", book.getName());
-                book.setIsDebtPaid(false);
-                bookService.save(book);
-            }
+        OffsetDateTime paidBefore = OffsetDateTime.now().minusHours(24);
+
+        Integer reopened = transactionTemplate.execute(status -> bookRepository.reopenDebtsOfUnreturnedBooks(paidBefore));
+        int rowsUpdated = reopened == null ? 0 : reopened;
+        libraryMetrics.recordDebtsReopened(rowsUpdated);
+
+        if (rowsUpdated > 0) {
+            log.warn("{} books were not returned within 24 hours after payment.", rowsUpdated);
         }
         log.info("Scheduled task completed.");
+        return rowsUpdated;
     }
 }
\ No newline at end of file
@@ -1,13 +1,19 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.dto.CurrentUserDTO;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.models.Role;
 import com.danir.libraryAPI.repositories.BookRepository;
 import com.danir.libraryAPI.repositories.PeopleRepository;
+import com.danir.libraryAPI.util.CacheConfig;
 import jakarta.persistence.EntityNotFoundException;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -15,10 +21,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
+@Timed(value = "library.service", histogram = true)
 public class PeopleService {
 
     private final PeopleRepository peopleRepository;
@@ -52,6 +60,16 @@ public class PeopleService {
                 });
     }
 
+    /**
+     * Id and roles of the authenticated user, cached by username so page views do not query the person
+     * and the roles again. Entries are evicted when a person is updated or deleted.
+     */
+    @Cacheable(cacheNames = CacheConfig.CURRENT_USERS, key = "#username")
+    public CurrentUserDTO findCurrentUser(String username) {
+        Person person = findByUsername(username);
+        return new CurrentUserDTO(person.getPersonId(), person.getFullName(), Set.copyOf(person.getRoles()));
+    }
+
     @Transactional
     public void save(Person person) {
         log.info("Saving new person with username: {}", person.getFullName());
@@ -62,6 +80,11 @@ public class PeopleService {
     }
 
     @Transactional
+    @Caching(evict = {
+            // book details carry the names of borrowers and reservers
+            @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.CURRENT_USERS, allEntries = true) // keyed by username, roles may change
+    })
     public void update(int id, Person person) {
         log.info("Updating person with id: {}", id);
 
@@ -81,6 +104,10 @@ public class PeopleService {
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOK_DETAILS, allEntries = true), // reservations of this person are dropped
+            @CacheEvict(cacheNames = CacheConfig.CURRENT_USERS, allEntries = true)
+    })
     public void delete(int id) {
         log.info("Deleting person with id: {}", id);
         Person person = peopleRepository.findById(id)
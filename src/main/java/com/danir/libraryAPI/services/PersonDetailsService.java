@@ -5,13 +5,15 @@ import com.danir.libraryAPI.repositories.PeopleRepository;
 import com.danir.libraryAPI.util.PersonDetails;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @Slf4j
-public class PersonDetailsService implements UserDetailsService {
+public class PersonDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final PeopleRepository peopleRepository;
 
@@ -26,4 +28,18 @@ public class PersonDetailsService implements UserDetailsService {
         log.info("User loaded: {}, roles: {}", person.getFullName(), person.getRoles());
         return new PersonDetails(person);
     }
+
+    /**
+     * Called by Spring Security after a successful login when the stored hash uses another algorithm
+     * or a lower cost than library.security.password-hashing, with the password already rehashed.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Person person = ((PersonDetails) user).getPerson();
+        peopleRepository.updatePassword(person.getPersonId(), newPassword);
+        person.setPassword(newPassword);
+        log.info("Password hash of {} upgraded", person.getFullName());
+        return new PersonDetails(person);
+    }
 }
@@ -0,0 +1,67 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.repositories.ProcessedNotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+/**
+ * Durable deduplication of notifications by message id, shared by all instances and kept across restarts.
+ * The listener claims an id (PENDING) before it sends the email and marks it SENT once the mail server accepted it;
+ * ids of emails that could not be sent are released again, their retries have to get through.
+ * A PENDING claim older than library.notifications.dedup.claim-timeout counts as abandoned, e.g. by a crashed
+ * instance, and can be claimed again by a redelivery.
+ * Delivery is therefore at least once: a notification is never lost, but it is emailed twice if an instance stops
+ * between sending and marking it SENT, or if a send takes longer than the claim timeout.
+ */
+@Service
+@Slf4j
+public class ProcessedNotificationService {
+
+    private final ProcessedNotificationRepository processedNotificationRepository;
+    private final Duration retention;
+    private final Duration claimTimeout;
+
+    public ProcessedNotificationService(ProcessedNotificationRepository processedNotificationRepository,
+                                        @Value("${library.notifications.dedup.retention:7d}") Duration retention,
+                                        @Value("${library.notifications.dedup.claim-timeout:10m}") Duration claimTimeout) {
+        this.processedNotificationRepository = processedNotificationRepository;
+        this.retention = retention;
+        this.claimTimeout = claimTimeout;
+    }
+
+    // false if the notification was already sent or is being sent, possibly by another instance
+    @Transactional
+    public boolean claim(String messageId) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return processedNotificationRepository.claim(messageId, now, now.minus(claimTimeout)) == 1;
+    }
+
+    @Transactional
+    public void markSent(Collection<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        processedNotificationRepository.markSent(messageIds, OffsetDateTime.now());
+    }
+
+    @Transactional
+    public void release(String messageId) {
+        processedNotificationRepository.deleteById(messageId);
+    }
+
+    // ids only have to outlive the redeliveries and retries of their notification
+    @Scheduled(cron = "0 30 0 * * ?")
+    @Transactional
+    public int purge() {
+        int purged = processedNotificationRepository.deleteProcessedBefore(OffsetDateTime.now().minus(retention));
+        log.info("Purged {} processed notification ids older than {}", purged, retention);
+        return purged;
+    }
+}
@@ -0,0 +1,43 @@
+package com.danir.libraryAPI.util;
+
+import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.Person;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain field-by-field Book <-> BookDTO conversion.
+ * Borrower and reservation names are null when the book is free, associations are never set from a DTO.
+ */
+@Component
+public class BookMapper {
+
+    public BookDTO toBookDTO(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+
+        Person person = book.getPerson();
+        Person reservedBy = book.getReservedBy();
+
+        return new BookDTO(
+                book.getBookId(),
+                book.getName(),
+                book.getAuthor(),
+                book.getYear(),
+                person == null ? null : person.getFullName(),
+                reservedBy == null ? null : reservedBy.getFullName(),
+                book.isOverdue());
+    }
+
+    public Book toBook(BookDTO bookDTO) {
+        if (bookDTO == null) {
+            throw new IllegalArgumentException("BookDTO cannot be null");
+        }
+
+        Book book = new Book(bookDTO.getName(), bookDTO.getYear(), bookDTO.getAuthor());
+        book.setBookId(bookDTO.getBookId());
+        book.setOverdue(bookDTO.isOverdue());
+        return book;
+    }
+}
@@ -0,0 +1,44 @@
+package com.danir.libraryAPI.util;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOK_DETAILS = "bookDetails";
+    public static final String CURRENT_USERS = "currentUsers";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${library.cache.book-details.maximum-size:10000}") long maximumSize,
+                                     @Value("${library.cache.book-details.ttl:5m}") Duration ttl,
+                                     @Value("${library.cache.current-users.maximum-size:10000}") long currentUsersMaximumSize,
+                                     @Value("${library.cache.current-users.ttl:10m}") Duration currentUsersTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOK_DETAILS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        // id and roles of logged in users by username; the ttl bounds how long a missed eviction could last
+        cacheManager.registerCustomCache(CURRENT_USERS, Caffeine.newBuilder()
+                .maximumSize(currentUsersMaximumSize)
+                .expireAfterWrite(currentUsersTtl)
+                .recordStats()
+                .build());
+        cacheManager.setAllowNullValues(false);
+
+        // evictions are applied after the surrounding transaction commits, so a read that starts after the eviction
+        // sees the new state; a read that loaded the row before the commit can still put the old state back
+        // afterwards, which only the ttl bounds
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,29 @@
+package com.danir.libraryAPI.util;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Replaces Spring Boot's open-in-view (spring.jpa.open-in-view: false). An open entity manager holds
+ * its database connection until the view is rendered, so payment pages, which wait for Stripe,
+ * are excluded and only use connections inside their own short transactions.
+ */
+@Configuration
+public class OpenEntityManagerInViewConfig implements WebMvcConfigurer {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public OpenEntityManagerInViewConfig(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns("/payment/**");
+    }
+}
@@ -0,0 +1,51 @@
+package com.danir.libraryAPI.util;
+
+import com.danir.libraryAPI.dto.PersonDTO;
+import com.danir.libraryAPI.models.Person;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Plain field-by-field Person <-> PersonDTO conversion.
+ * Collections are copied, missing ones keep the defaults of the target object.
+ */
+@Component
+public class PersonMapper {
+
+    public Person toPerson(PersonDTO personDTO) {
+        if (personDTO == null) {
+            throw new IllegalArgumentException("PersonDTO cannot be null");
+        }
+
+        Person person = new Person(personDTO.getFullName(), personDTO.getYearOfBirth(),
+                personDTO.getEmail(), personDTO.getPassword());
+        if (personDTO.getRoles() != null) {
+            person.setRoles(new HashSet<>(personDTO.getRoles()));
+        }
+        if (personDTO.getBookList() != null) {
+            person.setBookList(new ArrayList<>(personDTO.getBookList()));
+        }
+        return person;
+    }
+
+    public PersonDTO toPersonDTO(Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("Person cannot be null");
+        }
+
+        PersonDTO personDTO = new PersonDTO();
+        personDTO.setFullName(person.getFullName());
+        personDTO.setYearOfBirth(person.getYearOfBirth());
+        personDTO.setEmail(person.getEmail());
+        personDTO.setPassword(person.getPassword());
+        if (person.getRoles() != null) {
+            personDTO.setRoles(new HashSet<>(person.getRoles()));
+        }
+        if (person.getBookList() != null) {
+            personDTO.setBookList(new ArrayList<>(person.getBookList()));
+        }
+        return personDTO;
+    }
+}
@@ -3,16 +3,17 @@ package com.danir.libraryAPI.util;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.models.Role;
 import com.danir.libraryAPI.repositories.PeopleRepository;
+import com.danir.libraryAPI.security.PasswordHashingAuthenticationProvider;
+import com.danir.libraryAPI.services.PersonDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.boot.CommandLineRunner;
@@ -28,8 +29,12 @@ public class SecurityConfig{
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/register", "/login", "/css/**").permitAll()
+                        // health checks do not log in; the Prometheus scraper sends admin credentials over basic auth
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/prometheus").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
+                .httpBasic(Customizer.withDefaults())
                 .formLogin(form -> form
                         .loginPage("/login")
                         .successHandler((request, response, authentication) -> {
@@ -52,14 +57,16 @@ public class SecurityConfig{
         return config.getAuthenticationManager();
     }
 
+    // login checks passwords on the hashing pool and rehashes outdated hashes through PersonDetailsService
     @Bean
-    @Lazy
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordHashingAuthenticationProvider authenticationProvider(PersonDetailsService personDetailsService,
+                                                                        PasswordEncoder passwordEncoder) {
+        return new PasswordHashingAuthenticationProvider(personDetailsService, personDetailsService, passwordEncoder);
     }
 
+    // the PasswordEncoder is BoundedPasswordEncoder, configured by library.security.password-hashing
     @Bean
-    public CommandLineRunner dataInitializer(PeopleRepository peopleRepository) {
+    public CommandLineRunner dataInitializer(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder) {
         return args -> {
             // Check if exists admin with this email
             if (peopleRepository.findByEmail("admin@example.com").isEmpty()) {
@@ -67,7 +74,7 @@ public class SecurityConfig{
                 admin.setFullName("Admin");
                 admin.setEmail("admin@example.com");
                 admin.setYearOfBirth(1995);
-                admin.setPassword(passwordEncoder().encode("password")); // Encrypt password
+                admin.setPassword(passwordEncoder.encode("password")); // Encrypt password
                 admin.getRoles().add(Role.ROLE_ADMIN);
                 peopleRepository.save(admin); // Save admin in db
             }
@@ -77,7 +84,7 @@ public class SecurityConfig{
                 user.setFullName("Bambi");
                 user.setEmail("user@example.com");
                 user.setYearOfBirth(1995);
-                user.setPassword(passwordEncoder().encode("password"));
+                user.setPassword(passwordEncoder.encode("password"));
                 user.getRoles().add(Role.ROLE_USER);
                 peopleRepository.save(user);
             }
@@ -11,4 +11,6 @@ public class StripeConfig {
     private String publishableKey;
     private String secretKey;
     private String currency;
+    // optional, points the client at a local stand-in of the Stripe API
+    private String apiBase;
 }
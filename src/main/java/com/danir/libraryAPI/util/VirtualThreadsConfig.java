@@ -0,0 +1,81 @@
+package com.danir.libraryAPI.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.config.ContainerCustomizer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opt-in mode (library.virtual-threads.enabled=true, Java 21+) that runs servlet requests,
+ * RabbitMQ listeners, scheduled jobs and async MVC work on virtual threads.
+ * Blocking JDBC, SMTP and Stripe calls then park a virtual thread instead of holding a pooled platform thread,
+ * so the Hikari pool size (not the Tomcat pool) limits how much work hits the database at once.
+ * The project compiles for Java 17, therefore the virtual thread API is looked up reflectively.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfig {
+
+    private final ThreadFactory requestThreads = virtualThreadFactory("http-vt-");
+
+    public VirtualThreadsConfig() {
+        log.info("Virtual threads enabled for requests, listeners and scheduled jobs");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor(requestThreads));
+    }
+
+    // also used for StreamingResponseBody exports
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public SimpleAsyncTaskExecutor applicationTaskExecutor() {
+        return virtualThreadExecutor(virtualThreadFactory("task-vt-"));
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:1}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadFactory(virtualThreadFactory("scheduling-vt-"));
+        return scheduler;
+    }
+
+    // applied by the notification listener container factory, so @RabbitListener consumers run on virtual threads
+    @Bean
+    public ContainerCustomizer<SimpleMessageListenerContainer> virtualThreadsListenerContainerCustomizer() {
+        SimpleAsyncTaskExecutor executor = virtualThreadExecutor(virtualThreadFactory("rabbit-vt-"));
+        return container -> container.setTaskExecutor(executor);
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(ThreadFactory threadFactory) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(threadFactory);
+        return executor;
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory()
+    static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(name.invoke(builder, namePrefix, 0L));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("library.virtual-threads.enabled requires Java 21 or newer, running on "
+                    + Runtime.version(), e);
+        }
+    }
+}
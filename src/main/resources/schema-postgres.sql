@@ -0,0 +1,65 @@
+-- Executed on every startup after Hibernate has initialized (spring.sql.init), so every statement must be idempotent.
+
+-- keyset pagination of the catalog
+CREATE INDEX IF NOT EXISTS idx_book_year_book_id ON book (year, book_id);
+
+-- substring search over titles and authors
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_book_name_trgm ON book USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_book_author_trgm ON book USING gin (lower(author) gin_trgm_ops);
+
+-- progress of partitioned nightly jobs (PartitionedJobRunner)
+CREATE TABLE IF NOT EXISTS job_partition (
+    partition_id   BIGSERIAL PRIMARY KEY,
+    job_name       VARCHAR(100) NOT NULL,
+    run_started_at TIMESTAMPTZ  NOT NULL,
+    from_id        INT          NOT NULL,
+    to_id          INT          NOT NULL,
+    status         VARCHAR(20)  NOT NULL,
+    rows_updated   INT,
+    duration_ms    BIGINT,
+    finished_at    TIMESTAMPTZ
+);
+CREATE INDEX IF NOT EXISTS idx_job_partition_job_name_status ON job_partition (job_name, status);
+
+-- notifications written together with the book change and relayed to RabbitMQ (OutboxRelayService)
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    outbox_id  BIGSERIAL PRIMARY KEY,
+    message_id VARCHAR(36)  NOT NULL UNIQUE,
+    to_email   VARCHAR(255) NOT NULL,
+    subject    VARCHAR(255) NOT NULL,
+    message    TEXT         NOT NULL,
+    created_at TIMESTAMPTZ  NOT NULL
+);
+
+-- overdue digests read books grouped by borrower (NotificationService)
+CREATE INDEX IF NOT EXISTS idx_book_person_id_book_id ON book (person_id, book_id);
+
+-- a Stripe payment intent is recorded at most once (PaymentService.confirmPayment)
+ALTER TABLE payment ADD COLUMN IF NOT EXISTS payment_intent_id VARCHAR(255);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_payment_payment_intent_id ON payment (payment_intent_id);
+
+-- outstanding debt per person, read by profile and payment pages (DebtLedgerService)
+CREATE TABLE IF NOT EXISTS person_debt (
+    person_id       INT              PRIMARY KEY REFERENCES person (person_id) ON DELETE CASCADE,
+    balance         DOUBLE PRECISION NOT NULL,
+    books_with_debt INT              NOT NULL,
+    updated_at      TIMESTAMPTZ      NOT NULL
+);
+
+-- paid loans that are still borrowed, the only rows the post-payment return check reads (PaymentService)
+CREATE INDEX IF NOT EXISTS idx_book_paid_loans_payment_date ON book (payment_date)
+    WHERE is_debt_paid = true AND person_id IS NOT NULL;
+
+-- case-insensitive username lookups (PeopleRepository.findByFullNameIgnoreCase) at login and on cache misses
+CREATE INDEX IF NOT EXISTS idx_person_lower_full_name ON person (lower(full_name));
+
+-- message ids of notifications already taken on by a listener, shared by all instances (ProcessedNotificationService)
+CREATE TABLE IF NOT EXISTS processed_notification (
+    message_id   VARCHAR(36) PRIMARY KEY,
+    processed_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_processed_notification_processed_at ON processed_notification (processed_at);
+-- PENDING while the claiming listener sends the email, SENT afterwards; a stale PENDING claim can be taken over
+ALTER TABLE processed_notification ADD COLUMN IF NOT EXISTS status VARCHAR(10) NOT NULL DEFAULT 'SENT';
+ALTER TABLE processed_notification ADD COLUMN IF NOT EXISTS claimed_at TIMESTAMPTZ;
@@ -0,0 +1,206 @@
+package com.danir.libraryAPI.batch;
+
+import com.danir.libraryAPI.models.JobPartition;
+import com.danir.libraryAPI.repositories.BookRepository;
+import com.danir.libraryAPI.repositories.JobPartitionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionedJobRunnerTest {
+
+    private static final String JOB = "test-job";
+
+    @Mock
+    private JobPartitionRepository jobPartitionRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PartitionedJobRunner jobRunner;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jobRunner = new PartitionedJobRunner(jobPartitionRepository, bookRepository, transactionManager,
+                meterRegistry, 4, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobRunner.shutdown();
+    }
+
+    @Test
+    void run_ShouldSplitIdSpaceAndProcessPartitionsInParallel() {
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of());
+        when(bookRepository.findMinBookId()).thenReturn(1);
+        when(bookRepository.findMaxBookId()).thenReturn(250);
+        when(jobPartitionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> {
+            threads.add(Thread.currentThread().getName());
+            return toId - fromId + 1;
+        });
+
+        assertFalse(report.resumed());
+        assertEquals(3, report.partitions().size());
+        assertEquals(250, report.rowsUpdated());
+        assertEquals(0, report.failedPartitions());
+        assertEquals(List.of(1, 101, 201), report.partitions().stream().map(JobReport.PartitionReport::fromId).toList());
+        assertEquals(List.of(100, 200, 250), report.partitions().stream().map(JobReport.PartitionReport::toId).toList());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("ForkJoinPool")));
+
+        verify(jobPartitionRepository).deleteByJobName(JOB);
+        verify(jobPartitionRepository, times(3)).save(argThat(partition -> partition.getStatus() == JobPartition.Status.COMPLETED));
+        assertEquals(3, meterRegistry.get("library.job.partition").tag("job", JOB).timer().count());
+    }
+
+    @Test
+    void run_ShouldResumeOnlyUnfinishedPartitions() {
+        OffsetDateTime runStartedAt = OffsetDateTime.now();
+        JobPartition pending = new JobPartition(JOB, runStartedAt, 101, 200);
+        JobPartition failed = new JobPartition(JOB, runStartedAt, 201, 250);
+        failed.setStatus(JobPartition.Status.FAILED);
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of(pending, failed));
+
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> 1);
+
+        assertTrue(report.resumed());
+        assertEquals(2, report.partitions().size());
+        assertEquals(JobPartition.Status.COMPLETED, pending.getStatus());
+        assertEquals(JobPartition.Status.COMPLETED, failed.getStatus());
+        verify(jobPartitionRepository, never()).deleteByJobName(any());
+        verify(bookRepository, never()).findMinBookId();
+    }
+
+    @Test
+    void resume_ShouldFinishInterruptedRunWithItsOriginalStartTime() {
+        // started before midnight, the application stopped after the first range completed
+        OffsetDateTime runStartedAt = OffsetDateTime.now().minusHours(3);
+        JobPartition pending = new JobPartition(JOB, runStartedAt, 101, 200);
+        JobPartition alsoPending = new JobPartition(JOB, runStartedAt, 201, 250);
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of(pending, alsoPending));
+
+        // a fresh runner, as after the restart
+        jobRunner.shutdown();
+        jobRunner = new PartitionedJobRunner(jobPartitionRepository, bookRepository, transactionManager,
+                meterRegistry, 4, 100);
+        Set<OffsetDateTime> cutoffs = ConcurrentHashMap.newKeySet();
+        JobReport report = jobRunner.resume(JOB, (fromId, toId, startedAt) -> {
+            cutoffs.add(startedAt);
+            return 1;
+        }).orElseThrow();
+
+        assertTrue(report.resumed());
+        assertEquals(List.of(101, 201), report.partitions().stream().map(JobReport.PartitionReport::fromId).toList());
+        assertEquals(Set.of(runStartedAt), cutoffs);
+        assertEquals(JobPartition.Status.COMPLETED, pending.getStatus());
+        assertEquals(JobPartition.Status.COMPLETED, alsoPending.getStatus());
+        verify(jobPartitionRepository, never()).deleteByJobName(any());
+    }
+
+    @Test
+    void resume_ShouldDoNothing_WhenNoRunWasInterrupted() {
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of());
+
+        assertTrue(jobRunner.resume(JOB, (fromId, toId, runStartedAt) -> fail("no partition expected")).isEmpty());
+        verify(jobPartitionRepository, never()).deleteByJobName(any());
+        verify(bookRepository, never()).findMinBookId();
+    }
+
+    @Test
+    void run_ShouldPlanNewRun_WhenUnfinishedPartitionsAreOlderThanResumeWindow() {
+        JobPartition stale = new JobPartition(JOB, OffsetDateTime.now().minus(PartitionedJobRunner.RESUME_WINDOW).minusMinutes(1), 101, 200);
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of(stale));
+        when(bookRepository.findMinBookId()).thenReturn(1);
+        when(bookRepository.findMaxBookId()).thenReturn(300);
+        when(jobPartitionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> 1);
+
+        assertFalse(report.resumed());
+        assertEquals(List.of(1, 101, 201), report.partitions().stream().map(JobReport.PartitionReport::fromId).toList());
+        verify(jobPartitionRepository).deleteByJobName(JOB);
+    }
+
+    @Test
+    void run_ShouldPlanNewRun_WhenCurrentRunOnlyHasFailedPartitions() {
+        JobPartition failed = new JobPartition(JOB, OffsetDateTime.now(), 101, 200);
+        failed.setStatus(JobPartition.Status.FAILED);
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of(failed));
+        when(bookRepository.findMinBookId()).thenReturn(1);
+        when(bookRepository.findMaxBookId()).thenReturn(200);
+        when(jobPartitionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> 1);
+
+        // the failed range is part of the new plan instead of replacing it
+        assertFalse(report.resumed());
+        assertEquals(2, report.partitions().size());
+        assertEquals(0, report.failedPartitions());
+    }
+
+    @Test
+    void run_ShouldMarkFailedPartitionAndContinueWithOthers() {
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of());
+        when(bookRepository.findMinBookId()).thenReturn(1);
+        when(bookRepository.findMaxBookId()).thenReturn(200);
+        when(jobPartitionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> {
+            if (fromId == 1) {
+                throw new IllegalStateException("connection lost");
+            }
+            return 5;
+        });
+
+        assertEquals(1, report.failedPartitions());
+        assertEquals(5, report.rowsUpdated());
+        assertEquals(JobPartition.Status.FAILED, report.partitions().get(0).status());
+        assertEquals(JobPartition.Status.COMPLETED, report.partitions().get(1).status());
+        verify(transactionManager, atLeastOnce()).rollback(any());
+    }
+
+    @Test
+    void run_ShouldDoNothing_WhenCatalogIsEmpty() {
+        when(jobPartitionRepository.findByJobNameAndStatusNotOrderByFromId(JOB, JobPartition.Status.COMPLETED))
+                .thenReturn(List.of());
+        when(bookRepository.findMinBookId()).thenReturn(null);
+        when(bookRepository.findMaxBookId()).thenReturn(null);
+
+        JobReport report = jobRunner.run(JOB, (fromId, toId, runStartedAt) -> fail("no partition expected"));
+
+        assertTrue(report.partitions().isEmpty());
+        verify(jobPartitionRepository, never()).saveAll(anyList());
+    }
+}
@@ -0,0 +1,111 @@
+package com.danir.libraryAPI.email;
+
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class EmailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension smtpServer = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    private JavaMailSenderImpl mailSender;
+
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl() {
+            @Override
+            protected Transport connectTransport() throws MessagingException {
+                connectionsOpened.incrementAndGet();
+                return super.connectTransport();
+            }
+        };
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getSmtp().getPort());
+    }
+
+    @Test
+    void sendEmails_ShouldDeliverWholeBatch() throws Exception {
+        EmailService emailService = new EmailService(mailSender, libraryMetrics, "library@example.com", 2, 2);
+        List<EmailMessage> emails = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            emails.add(new EmailMessage("reader" + i + "@example.com", "Subject " + i, "Text " + i));
+        }
+
+        EmailBatchResult result = emailService.sendEmails(emails);
+
+        assertEquals(5, result.sent());
+        assertTrue(result.failures().isEmpty());
+        MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertEquals(5, received.length);
+        assertEquals("library@example.com", received[0].getFrom()[0].toString());
+        // chunks of two emails per connection
+        assertEquals(3, connectionsOpened.get());
+        verify(libraryMetrics).recordEmailsSent(5);
+        verify(libraryMetrics).recordEmailsFailed(0);
+    }
+
+    @Test
+    void sendEmails_ShouldShareConnectionsBetweenEmailsOfBatch() {
+        EmailService emailService = new EmailService(mailSender, libraryMetrics, "library@example.com", 4, 50);
+        List<EmailMessage> emails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            emails.add(new EmailMessage("reader" + i + "@example.com", "Subject " + i, "Text " + i));
+        }
+
+        EmailBatchResult result = emailService.sendEmails(emails);
+
+        assertEquals(20, result.sent());
+        assertEquals(20, smtpServer.getReceivedMessages().length);
+        assertEquals(1, connectionsOpened.get());
+    }
+
+    @Test
+    void sendEmail_ShouldDeliverSingleMessage() throws Exception {
+        EmailService emailService = new EmailService(mailSender, libraryMetrics, "library@example.com", 1, 50);
+
+        emailService.sendEmail("reader@example.com", "The book is free", "Hello");
+
+        MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("The book is free", received[0].getSubject());
+    }
+
+    @Test
+    void sendEmails_ShouldReportEveryMessageAsFailed_WhenServerIsUnreachable() {
+        mailSender.setPort(smtpServer.getSmtp().getPort() + 1);
+        EmailService emailService = new EmailService(mailSender, libraryMetrics, "library@example.com", 1, 50);
+
+        EmailBatchResult result = emailService.sendEmails(List.of(
+                new EmailMessage("a@example.com", "Subject", "Text"),
+                new EmailMessage("b@example.com", "Subject", "Text")));
+
+        assertEquals(0, result.sent());
+        assertTrue(result.isFailed(0));
+        assertTrue(result.isFailed(1));
+        verify(libraryMetrics).recordEmailsFailed(2);
+    }
+}
@@ -0,0 +1,137 @@
+package com.danir.libraryAPI.payments;
+
+import com.danir.libraryAPI.util.StripeConfig;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the gateway against a local stand-in of the Stripe API that answers with canned payment intents.
+ */
+class StripeGatewayTest {
+
+    private HttpServer stripeServer;
+    private StripeConfig stripeConfig;
+    private StripeGateway stripeGateway;
+    private final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch releaseResponses = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stripeServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stripeServer.setExecutor(Executors.newCachedThreadPool());
+        stripeServer.createContext("/v1/payment_intents", this::handlePaymentIntents);
+        stripeServer.start();
+
+        stripeConfig = new StripeConfig();
+        stripeConfig.setSecretKey("sk_test_local");
+        stripeConfig.setCurrency("eur");
+        stripeConfig.setApiBase("http://localhost:" + stripeServer.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseResponses.countDown();
+        if (stripeGateway != null) {
+            stripeGateway.shutdown();
+        }
+        stripeServer.stop(0);
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+    }
+
+    @Test
+    void createPaymentIntent_ShouldSendApiKeyAndIdempotencyKeyPerRequest() throws StripeException {
+        stripeGateway = new StripeGateway(stripeConfig, 2, 10, 0, 5000);
+        PaymentQuote quote = PaymentQuote.of("Payment for book: Test", 15.0, "book:1:1700000000", 1, List.of(1));
+
+        PaymentIntent paymentIntent = stripeGateway.createPaymentIntent(quote);
+        stripeGateway.createPaymentIntent(PaymentQuote.of("Payment for book: Test", 15.0, "book:1:1700000000", 1, List.of(1)));
+
+        assertEquals("pi_local", paymentIntent.getId());
+        assertEquals("pi_local_secret", paymentIntent.getClientSecret());
+        assertEquals(List.of(quote.idempotencyKey(), quote.idempotencyKey()), idempotencyKeys);
+        assertTrue(authorizations.stream().allMatch("Bearer sk_test_local"::equals));
+    }
+
+    @Test
+    void retrievePaymentIntent_ShouldReturnStatus() throws StripeException {
+        stripeGateway = new StripeGateway(stripeConfig, 2, 10, 0, 5000);
+
+        assertEquals("succeeded", stripeGateway.retrievePaymentIntent("pi_local").getStatus());
+    }
+
+    @Test
+    void createPaymentIntentAsync_ShouldCompleteOnStripePool() throws Exception {
+        stripeGateway = new StripeGateway(stripeConfig, 2, 10, 0, 5000);
+
+        PaymentIntent paymentIntent = stripeGateway
+                .createPaymentIntentAsync(PaymentQuote.of("Payment for multiple books", 20.0, "person:1:1700000000", 1, List.of(1, 2)))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals("pi_local", paymentIntent.getId());
+    }
+
+    @Test
+    void createPaymentIntentAsync_ShouldFailFast_WhenPoolAndQueueAreFull() throws Exception {
+        stripeGateway = new StripeGateway(stripeConfig, 1, 1, 0, 5000);
+        releaseResponses = new CountDownLatch(1);
+        PaymentQuote quote = PaymentQuote.of("Payment for book: Test", 15.0, "book:1:1700000000", 1, List.of(1));
+
+        CompletableFuture<PaymentIntent> running = stripeGateway.createPaymentIntentAsync(quote);
+        CompletableFuture<PaymentIntent> queued = stripeGateway.createPaymentIntentAsync(quote);
+        CompletableFuture<PaymentIntent> rejected = stripeGateway.createPaymentIntentAsync(quote);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+        releaseResponses.countDown();
+        assertEquals("pi_local", running.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("pi_local", queued.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    private void handlePaymentIntents(HttpExchange exchange) throws IOException {
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        String status = "requires_payment_method";
+        if ("POST".equals(exchange.getRequestMethod())) {
+            idempotencyKeys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+            try {
+                releaseResponses.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            status = "succeeded";
+        }
+
+        byte[] body = ("""
+                {"id": "pi_local", "object": "payment_intent", "amount": 1500, "currency": "eur",
+                 "client_secret": "pi_local_secret", "status": "%s"}
+                """.formatted(status)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationConsumerScalerTest {
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Mock
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private SimpleMessageListenerContainer container;
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    private NotificationConsumerScaler scaler;
+
+    @BeforeEach
+    void setUp() {
+        NotificationConsumerProperties properties = new NotificationConsumerProperties();
+        properties.setMinConsumers(2);
+        properties.setMaxConsumers(10);
+        properties.setMessagesPerConsumer(100);
+        scaler = new NotificationConsumerScaler(amqpAdmin, listenerRegistry, properties, libraryMetrics);
+    }
+
+    @Test
+    void targetConsumers_ShouldFollowBacklogWithinBounds() {
+        assertEquals(2, scaler.targetConsumers(0));
+        assertEquals(2, scaler.targetConsumers(150));
+        assertEquals(5, scaler.targetConsumers(401));
+        assertEquals(10, scaler.targetConsumers(100_000));
+    }
+
+    @Test
+    void scale_ShouldResizeContainerAndExportBacklog() {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_NAME))
+                .thenReturn(new QueueInformation(RabbitMQConfig.QUEUE_NAME, 700, 2));
+        when(listenerRegistry.getListenerContainer(NotificationListenerConfig.LISTENER_ID)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getActiveConsumerCount()).thenReturn(2);
+
+        scaler.scale();
+
+        verify(libraryMetrics).recordNotificationBacklog(700);
+        verify(libraryMetrics).recordNotificationConsumers(7);
+        verify(container).setConcurrentConsumers(7);
+    }
+
+    @Test
+    void scale_ShouldKeepContainer_WhenConsumerCountMatches() {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_NAME))
+                .thenReturn(new QueueInformation(RabbitMQConfig.QUEUE_NAME, 10, 2));
+        when(listenerRegistry.getListenerContainer(NotificationListenerConfig.LISTENER_ID)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getActiveConsumerCount()).thenReturn(2);
+
+        scaler.scale();
+
+        verify(container, never()).setConcurrentConsumers(anyInt());
+    }
+}
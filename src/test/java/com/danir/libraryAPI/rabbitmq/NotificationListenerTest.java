@@ -0,0 +1,81 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import com.danir.libraryAPI.email.EmailBatchResult;
+import com.danir.libraryAPI.email.EmailMessage;
+import com.danir.libraryAPI.email.EmailService;
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import com.danir.libraryAPI.services.ProcessedNotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationListenerTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private NotificationRetryPublisher notificationRetryPublisher;
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    @Mock
+    private ProcessedNotificationService processedNotificationService;
+
+    private NotificationListener notificationListener;
+
+    @BeforeEach
+    void setUp() {
+        notificationListener = new NotificationListener(emailService, notificationRetryPublisher, libraryMetrics,
+                processedNotificationService);
+    }
+
+    @Test
+    void receiveMessages_ShouldSendOnlyNotificationsClaimedByThisDelivery() {
+        // "b" was already taken on elsewhere, the second "a" repeats the first one of the same batch
+        when(processedNotificationService.claim("a")).thenReturn(true, false);
+        when(processedNotificationService.claim("b")).thenReturn(false);
+        when(emailService.sendEmails(anyList())).thenReturn(new EmailBatchResult(1, Map.of()));
+
+        notificationListener.receiveMessages(List.of(message("a"), message("b"), message("a")));
+
+        verify(emailService).sendEmails(ArgumentMatchers.<List<EmailMessage>>argThat(emails -> emails.size() == 1));
+        verify(processedNotificationService, never()).release(any());
+        verify(processedNotificationService).markSent(List.of("a"));
+    }
+
+    @Test
+    void receiveMessages_ShouldReleaseIdsOfFailedEmails_SoTheirRetriesAreSent() {
+        when(processedNotificationService.claim(anyString())).thenReturn(true);
+        when(emailService.sendEmails(anyList()))
+                .thenReturn(new EmailBatchResult(1, Map.of(1, new IllegalStateException("SMTP down"))));
+
+        notificationListener.receiveMessages(List.of(message("a"), message("b")));
+
+        verify(processedNotificationService).release("b");
+        verify(processedNotificationService, never()).release("a");
+        verify(processedNotificationService).markSent(List.of("a"));
+        verify(notificationRetryPublisher).retryOrDeadLetter(anyList(), anyMap());
+    }
+
+    private static Message<NotificationMessage> message(String messageId) {
+        return MessageBuilder.withPayload(new NotificationMessage("reader@example.com", "Subject", "Text"))
+                .setHeader(AmqpHeaders.MESSAGE_ID, messageId)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.danir.libraryAPI.rabbitmq;
+
+import com.danir.libraryAPI.metrics.LibraryMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationRetryPublisherTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations operations;
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    private NotificationRetryPublisher retryPublisher;
+
+    @BeforeEach
+    void setUp() {
+        retryPublisher = new NotificationRetryPublisher(rabbitTemplate, amqpAdmin, libraryMetrics, List.of(1000L, 5000L));
+    }
+
+    @Test
+    void retryOrDeadLetter_ShouldRouteByAttemptAndWaitForConfirms() {
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations));
+
+        NotificationMessage payload = new NotificationMessage("reader@example.com", "Subject", "Text");
+        Message<NotificationMessage> firstDelivery = MessageBuilder.withPayload(payload).build();
+        Message<NotificationMessage> sent = MessageBuilder.withPayload(payload).build();
+        Message<NotificationMessage> lastAttempt = MessageBuilder.withPayload(payload)
+                .setHeader(NotificationRetryPublisher.ATTEMPT_HEADER, 3)
+                .build();
+
+        retryPublisher.retryOrDeadLetter(List.of(firstDelivery, sent, lastAttempt),
+                Map.of(0, new IllegalStateException("smtp down"), 2, new IllegalStateException("smtp down")));
+
+        ArgumentCaptor<MessagePostProcessor> retryHeaders = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(operations).convertAndSend(eq(RabbitMQConfig.RETRY_EXCHANGE_NAME), eq(RabbitMQConfig.retryRoutingKey(0)),
+                eq(payload), retryHeaders.capture());
+        verify(operations).convertAndSend(eq(RabbitMQConfig.DEAD_LETTER_EXCHANGE_NAME), eq(RabbitMQConfig.DEAD_LETTER_ROUTING_KEY),
+                eq(payload), any(MessagePostProcessor.class));
+        verify(operations).waitForConfirmsOrDie(anyLong());
+        verify(libraryMetrics).recordNotificationsRetried(1);
+        verify(libraryMetrics).recordNotificationsDeadLettered(1);
+
+        org.springframework.amqp.core.Message amqpMessage = new org.springframework.amqp.core.Message(new byte[0], new MessageProperties());
+        retryHeaders.getValue().postProcessMessage(amqpMessage);
+        assertEquals(2, (Integer) amqpMessage.getMessageProperties().getHeader(NotificationRetryPublisher.ATTEMPT_HEADER));
+        assertEquals("smtp down", amqpMessage.getMessageProperties().getHeader(NotificationRetryPublisher.LAST_ERROR_HEADER));
+    }
+
+    @Test
+    void retryOrDeadLetter_ShouldNotPublish_WhenNothingFailed() {
+        retryPublisher.retryOrDeadLetter(List.of(), Map.of());
+
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void attemptOf_ShouldDefaultToFirstAttempt() {
+        assertEquals(1, NotificationRetryPublisher.attemptOf(MessageBuilder.withPayload("x").build()));
+        assertEquals(4, NotificationRetryPublisher.attemptOf(MessageBuilder.withPayload("x")
+                .setHeader(NotificationRetryPublisher.ATTEMPT_HEADER, 4L).build()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.danir.libraryAPI.repositories;
+
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+// every caller needs its own committed transaction, not the rolled back test transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookRepositoryConcurrencyTest {
+
+    private static final int CALLERS = 16;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PeopleRepository peopleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void reserveIfFree_ShouldLetExactlyOneConcurrentCallerReserve() throws Exception {
+        Book book = bookRepository.save(new Book("Contended Book", 2000, "Some Author"));
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            people.add(peopleRepository.save(new Person("Reader " + i, 1990, "reader" + i + "@example.com", "secret")));
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (Person person : people) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return transactionTemplate.execute(status ->
+                            bookRepository.reserveIfFree(book.getBookId(), person.getPersonId()));
+                }));
+            }
+            start.countDown();
+
+            int winners = 0;
+            for (Future<Integer> result : results) {
+                winners += result.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(1, winners);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, bookRepository.countByPersonIsNullAndReservedByIsNull());
+    }
+}
@@ -0,0 +1,109 @@
+package com.danir.libraryAPI.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHashingProperties properties;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new PasswordHashingProperties();
+        // cheapest settings, the tests check behaviour and not the cost
+        properties.setBcryptStrength(4);
+        properties.getArgon2().setMemoryKb(1024);
+        properties.getArgon2().setIterations(1);
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(10);
+        encoder = new BoundedPasswordEncoder(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    void encode_ShouldPrefixHashWithConfiguredAlgorithm() {
+        String hash = encoder.encode("password");
+
+        assertTrue(hash.startsWith("{bcrypt}"));
+        assertTrue(encoder.matches("password", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    void matches_ShouldAcceptLegacyHashWithoutPrefix_AndRequestUpgrade() {
+        // hashes stored before the prefix was introduced
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password");
+
+        assertTrue(encoder.matches("password", legacyHash));
+        assertTrue(encoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    void upgradeEncoding_ShouldBeTrue_WhenStrengthWasRaised() {
+        String weakHash = encoder.encode("password");
+        encoder.shutdown();
+
+        properties.setBcryptStrength(5);
+        encoder = new BoundedPasswordEncoder(properties, meterRegistry);
+
+        assertTrue(encoder.matches("password", weakHash));
+        assertTrue(encoder.upgradeEncoding(weakHash));
+    }
+
+    @Test
+    void argon2_ShouldEncodeNewHashes_AndStillMatchBcryptHashes() {
+        String bcryptHash = encoder.encode("password");
+        encoder.shutdown();
+
+        properties.setAlgorithm("argon2");
+        encoder = new BoundedPasswordEncoder(properties, meterRegistry);
+        String argon2Hash = encoder.encode("password");
+
+        assertTrue(argon2Hash.startsWith("{argon2}"));
+        assertTrue(encoder.matches("password", argon2Hash));
+        assertTrue(encoder.matches("password", bcryptHash));
+        assertTrue(encoder.upgradeEncoding(bcryptHash));
+        assertFalse(encoder.upgradeEncoding(argon2Hash));
+    }
+
+    @Test
+    void constructor_ShouldRejectUnknownAlgorithm() {
+        properties.setAlgorithm("md5");
+
+        assertThrows(IllegalArgumentException.class, () -> new BoundedPasswordEncoder(properties, meterRegistry));
+    }
+
+    @Test
+    void encode_ShouldRecordHashingTimeAndPoolMetrics() {
+        encoder.encode("password");
+        encoder.matches("password", encoder.encode("password"));
+
+        assertEquals(2, meterRegistry.get("library.password.hashing").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("library.password.hashing").tag("operation", "matches").timer().count());
+        assertNotNull(meterRegistry.find("executor.queued").tag("name", "password.hashing").gauge());
+    }
+
+    @Test
+    void encode_ShouldThrowOverloaded_WhenHashDoesNotFinishInTime() {
+        encoder.shutdown();
+        // a strength 12 hash takes hundreds of milliseconds
+        properties.setBcryptStrength(12);
+        properties.setTimeoutMs(1);
+        encoder = new BoundedPasswordEncoder(properties, meterRegistry);
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.encode("password"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.danir.libraryAPI.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PasswordHashingAuthenticationProviderTest {
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private UserDetailsPasswordService userDetailsPasswordService;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private PasswordHashingAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new PasswordHashingAuthenticationProvider(userDetailsService, userDetailsPasswordService, passwordEncoder);
+    }
+
+    @Test
+    void authenticate_ShouldFailAsAuthenticationError_WhenHashingPoolIsOverloaded() {
+        when(userDetailsService.loadUserByUsername("Danir"))
+                .thenReturn(User.withUsername("Danir").password("{bcrypt}hash").roles("USER").build());
+        when(passwordEncoder.matches("password", "{bcrypt}hash"))
+                .thenThrow(new PasswordHashingOverloadedException("Password hashing is overloaded, try again later",
+                        new RejectedExecutionException()));
+
+        InternalAuthenticationServiceException e = assertThrows(InternalAuthenticationServiceException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("Danir", "password")));
+        assertInstanceOf(PasswordHashingOverloadedException.class, e.getCause());
+    }
+}
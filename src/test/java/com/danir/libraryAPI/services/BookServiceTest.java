@@ -3,23 +3,37 @@ package com.danir.libraryAPI.services;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.danir.libraryAPI.dto.BookCursor;
+import com.danir.libraryAPI.dto.BookDTO;
+import com.danir.libraryAPI.dto.BookOperationDTO;
+import com.danir.libraryAPI.dto.BookOperationResultDTO;
+import com.danir.libraryAPI.dto.BookPageDTO;
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import com.danir.libraryAPI.models.Book;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.repositories.BookRepository;
 import com.danir.libraryAPI.repositories.PeopleRepository;
+import com.danir.libraryAPI.util.BookMapper;
+import com.danir.libraryAPI.util.CacheConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 public class BookServiceTest {
@@ -36,6 +50,21 @@ public class BookServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Spy
+    private BookMapper bookMapper = new BookMapper();
+
+    @Mock
+    private BookSuggestionService bookSuggestionService;
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    @Mock
+    private DebtLedgerService debtLedgerService;
+
+    @Mock
+    private CacheManager cacheManager;
+
     @InjectMocks
     private BookService bookService;
 
@@ -83,14 +112,19 @@ public class BookServiceTest {
 
     @Test
     void testSave_ShouldInvokeRepositorySave() {
-        bookService.save(book);
+        when(bookRepository.save(book)).thenReturn(book);
+        Book savedBook = bookService.save(book);
+
+        assertSame(book, savedBook);
         verify(bookRepository, times(1)).save(book);
+        verify(bookSuggestionService, times(1)).put(book);
     }
 
     @Test
     void testDelete_ShouldInvokeRepositoryDelete() {
         bookService.delete(1);
         verify(bookRepository, times(1)).deleteById(1);
+        verify(bookSuggestionService, times(1)).remove(1);
     }
 
     @Test
@@ -111,56 +145,129 @@ public class BookServiceTest {
         assertNull(book.getPerson(),"Book's person should be null after release");
         assertNull(book.getBorrowedDate());
         assertEquals("Test Book", person.getBorrowedBeforeBooks().get(0).getBook().getName());
+        verify(debtLedgerService).refresh(List.of(person.getPersonId()));
     }
 
     @Test
-    void testSearchBookByTitle_ShouldReturnFoundBooks(){
+    void testSearchBooks_ShouldReturnFoundBooks(){
         List<Book> foundBooks = List.of(new Book(), book);
-        when(bookRepository.findByTitleStartingWith("T")).thenReturn(foundBooks);
-        List<Book> result = bookService.searchBooksByTitle("T");
+        PageRequest pageRequest = PageRequest.of(0, 20);
+        when(bookRepository.searchByTitleOrAuthor("te", "te", pageRequest)).thenReturn(new PageImpl<>(foundBooks));
+        Page<Book> result = bookService.searchBooks(" Te ", pageRequest);
+
+        assertEquals(2, result.getContent().size(), "Expected 2 books in result");
+        assertEquals(foundBooks, result.getContent(), "Expected the same books in result");
+
+        verify(bookRepository, times(1)).searchByTitleOrAuthor("te", "te", pageRequest);
+    }
+
+    @Test
+    void testSearchBooks_ShouldEscapeLikeWildcards(){
+        PageRequest pageRequest = PageRequest.of(0, 20);
+        when(bookRepository.searchByTitleOrAuthor("100%_off", "100\\%\\_off", pageRequest)).thenReturn(Page.empty());
+
+        bookService.searchBooks("100%_off", pageRequest);
+
+        verify(bookRepository, times(1)).searchByTitleOrAuthor("100%_off", "100\\%\\_off", pageRequest);
+    }
 
-        assertEquals(2, result.size(), "Expected 2 books in result");
-        assertEquals(foundBooks, result, "Expected the same books in result");
+    @Test
+    void testSearchBooks_ShouldNotQuery_WhenQueryIsBlank(){
+        Page<Book> result = bookService.searchBooks("  ", PageRequest.of(0, 20));
 
-        verify(bookRepository, times(1)).findByTitleStartingWith("T");
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(bookRepository);
     }
 
     @Test
     void testReserveBook_ShouldReserveBookForPerson(){
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(peopleRepository.findById(1)).thenReturn(Optional.of(person));
+        when(peopleRepository.existsById(1)).thenReturn(true);
+        when(bookRepository.reserveIfFree(1, 1)).thenReturn(1);
 
-        bookService.reserveBook(1, 1);
+        String result = bookService.reserveBook(1, 1);
 
-        assertEquals(person, book.getReservedBy());
-        verify(bookRepository, times(1)).save(book);
+        assertNull(result);
+        verify(bookRepository, times(1)).reserveIfFree(1, 1);
+        verify(libraryMetrics, times(1)).recordReservations(1);
+        verify(bookRepository, never()).findById(anyInt());
+        verify(bookRepository, never()).save(any(Book.class));
     }
 
     @Test
     void testReserveBook_ShouldReturnMessageIfAlreadyReserved(){
-
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        book.setReservedBy(new Person());
+        when(peopleRepository.existsById(1)).thenReturn(true);
+        when(bookRepository.reserveIfFree(1, 1)).thenReturn(0);
+        when(bookRepository.existsById(1)).thenReturn(true);
 
         String result = bookService.reserveBook(1, 1);
 
         assertEquals("Book is already reserved", result);
         verify(bookRepository, never()).save(any(Book.class));
+        verify(libraryMetrics, never()).recordReservations(anyInt());
     }
 
     @Test
     void testReserveBook_BookNotFound() {
-        when(bookRepository.findById(99)).thenReturn(Optional.empty());
+        when(peopleRepository.existsById(1)).thenReturn(true);
+        when(bookRepository.reserveIfFree(99, 1)).thenReturn(0);
+        when(bookRepository.existsById(99)).thenReturn(false);
 
         assertThrows(IllegalArgumentException.class, () -> bookService.reserveBook(99, 1));
     }
 
     @Test
     void testReserveBook_PersonNotFound() {
-        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
-        when(peopleRepository.findById(99)).thenReturn(Optional.empty());
+        when(peopleRepository.existsById(99)).thenReturn(false);
 
         assertThrows(IllegalArgumentException.class, () -> bookService.reserveBook(1, 99));
+        verify(bookRepository, never()).reserveIfFree(anyInt(), anyInt());
+    }
+
+    @Test
+    void testExecuteBatch_ShouldReportResultPerOperation() {
+        Book borrowed = new Book("Borrowed Book", 1990, "Author");
+        borrowed.setBookId(2);
+        borrowed.setPerson(new Person());
+        book.setBorrowedDate(null);
+
+        when(bookRepository.findAllByIdForUpdate(Set.of(1, 2, 3))).thenReturn(List.of(book, borrowed));
+        when(peopleRepository.findAllById(Set.of(1))).thenReturn(List.of(person));
+
+        List<BookOperationResultDTO> results = bookService.executeBatch(BookOperationDTO.Type.ASSIGN, List.of(
+                new BookOperationDTO(1, 1),
+                new BookOperationDTO(2, 1),
+                new BookOperationDTO(3, 1)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("Book is already borrowed", results.get(1).getMessage());
+        assertEquals("Book not found", results.get(2).getMessage());
+        assertEquals(person, book.getPerson());
+        assertNotNull(book.getBorrowedDate());
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+
+    @Test
+    void testExecuteBatch_ShouldNotifyReleasedBooksInOneBatch() {
+        Book second = new Book("Second Book", 1990, "Author");
+        second.setBookId(2);
+        second.setPerson(person);
+        book.setPerson(person);
+
+        when(bookRepository.findAllByIdForUpdate(Set.of(1, 2))).thenReturn(List.of(book, second));
+
+        List<BookOperationResultDTO> results = bookService.executeBatch(BookOperationDTO.Type.RELEASE, List.of(
+                new BookOperationDTO(1, null),
+                new BookOperationDTO(2, null)));
+
+        assertTrue(results.stream().allMatch(BookOperationResultDTO::isSuccess));
+        assertNull(book.getPerson());
+        assertNull(second.getPerson());
+        assertEquals(2, person.getBorrowedBeforeBooks().size());
+        verify(notificationService, times(1)).notifyBooksReleased(List.of(book, second));
+        verify(libraryMetrics, times(1)).recordReleases(2);
+        verify(debtLedgerService, times(1)).refresh(Set.of(person.getPersonId()));
+        verify(notificationService, never()).notifyBookReleased(any());
+        verifyNoInteractions(peopleRepository);
     }
 
     @Test
@@ -193,35 +300,101 @@ public class BookServiceTest {
     }
 
     @Test
-    void testIsOverdue_ShouldChangeFlagOfOverdueToTrueIfBorrowedMoreThan10DaysAgo(){
-        book.setBorrowedDate(OffsetDateTime.now().minusDays(11));
+    void testFindCatalogPage_ShouldReturnCursorOfLastBook_WhenMoreBooksExist() {
+        BookDTO first = new BookDTO(1, "Test Book", "Author", 1990, null, null, false);
+        BookDTO second = new BookDTO(2, "Second Book", "Author", 1990, "John Doe", null, true);
+        BookDTO third = new BookDTO(3, "Third Book", "Author", 1995, null, null, false);
 
-        assertTrue(bookService.isOverdue(book));
+        when(bookRepository.findPageAfter(eq(1980), eq(7), any(OffsetDateTime.class), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(first, second, third));
+
+        BookPageDTO result = bookService.findCatalogPage(new BookCursor(1980, 7), 2, false);
+
+        assertEquals(List.of(first, second), result.getBooks());
+        assertEquals("1990:2", result.getNextCursor());
+        assertTrue(result.isHasNext());
+        verify(bookRepository, never()).count();
+        verify(bookRepository, never()).findById(anyInt());
     }
 
     @Test
-    void testCalculateDebt_ShouldCalculateDebtOfBook(){
-        book.setIsDebtPaid(false);
-        assertEquals(5.0, bookService.calculateDebt(book));
+    void testFindCatalogPage_ShouldReturnNoCursor_OnLastPage() {
+        BookDTO only = new BookDTO(1, "Test Book", "Author", 1990, null, null, false);
+        when(bookRepository.findAvailablePageAfter(eq(Integer.MIN_VALUE), eq(0), any(OffsetDateTime.class), eq(PageRequest.of(0, 21))))
+                .thenReturn(List.of(only));
 
-        book.setBorrowedDate(OffsetDateTime.now());
-        assertEquals(0.0, bookService.calculateDebt(book));
+        BookPageDTO result = bookService.findCatalogPage(BookCursor.START, 20, true);
 
-        book.setBorrowedDate(OffsetDateTime.now().minusDays(12));
-        assertEquals(20.0, bookService.calculateDebt(book));
+        assertEquals(1, result.getBooks().size());
+        assertNull(result.getNextCursor());
+        assertFalse(result.isHasNext());
     }
 
     @Test
-    void testCalculateTotalDebt(){
-        Book book2 = new Book();
-        book2.setPerson(person);
-        book2.setBorrowedDate(OffsetDateTime.now().minusDays(14));
-        book2.setIsDebtPaid(false);
-        book.setIsDebtPaid(false);
+    void testFindCatalogPage_ShouldClampRequestedPageSize() {
+        when(bookRepository.findPageAfter(eq(Integer.MIN_VALUE), eq(0), any(OffsetDateTime.class), eq(PageRequest.of(0, 101))))
+                .thenReturn(List.of());
+
+        BookPageDTO result = bookService.findCatalogPage(BookCursor.START, 10_000, false);
+
+        assertTrue(result.getBooks().isEmpty());
+    }
+
+    @Test
+    void testExportCatalog_ShouldPassEveryStreamedBookToConsumer() {
+        BookDTO first = new BookDTO(1, "First", "Author", 1990, null, null, false);
+        BookDTO second = new BookDTO(2, "Second", "Author", 1991, "John Doe", null, true);
+        when(bookRepository.streamAllListings(any())).thenReturn(Stream.of(first, second));
+
+        List<BookDTO> exported = new ArrayList<>();
+        long count = bookService.exportCatalog(exported::add);
+
+        assertEquals(2, count);
+        assertEquals(List.of(first, second), exported);
+    }
+
+    @Test
+    void testConvertToBookDTO_ShouldFillNamesOfBorrowerAndReserver() {
+        Person reserver = new Person();
+        reserver.setFullName("Jane Doe");
         book.setPerson(person);
-        person.setBookList(List.of(book, book2));
+        book.setReservedBy(reserver);
+
+        BookDTO bookDTO = bookService.convertToBookDTO(book);
 
-        assertEquals(35.0, bookService.calculateTotalDebt(person));
+        assertEquals(1, bookDTO.getBookId());
+        assertEquals("Test Book", bookDTO.getName());
+        assertEquals("John Doe", bookDTO.getPerson_name());
+        assertEquals("Jane Doe", bookDTO.getReserved_by_name());
+    }
+
+    @Test
+    void testConvertToBookDTO_ShouldLeaveNamesNull_WhenBookIsFree() {
+        BookDTO bookDTO = bookService.convertToBookDTO(book);
+
+        assertNull(bookDTO.getPerson_name());
+        assertNull(bookDTO.getReserved_by_name());
+    }
+
+    @Test
+    void testGetBookDetails_ShouldHandOutCopiesOfCachedDetails() {
+        when(cacheManager.getCache(CacheConfig.BOOK_DETAILS)).thenReturn(new ConcurrentMapCache(CacheConfig.BOOK_DETAILS));
+        when(bookRepository.findById(1)).thenReturn(Optional.of(book));
+
+        BookDTO first = bookService.getBookDetails(1);
+        first.setName("Changed by a caller");
+        BookDTO second = bookService.getBookDetails(1);
+
+        assertEquals("Test Book", second.getName());
+        assertNotSame(first, second);
+        verify(bookRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void testIsOverdue_ShouldChangeFlagOfOverdueToTrueIfBorrowedMoreThan10DaysAgo(){
+        book.setBorrowedDate(OffsetDateTime.now().minusDays(11));
+
+        assertTrue(bookService.isOverdue(book));
     }
 
 }
\ No newline at end of file
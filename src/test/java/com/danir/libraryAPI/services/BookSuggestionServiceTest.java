@@ -0,0 +1,80 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.dto.BookSuggestionDTO;
+import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookSuggestionServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private BookSuggestionService bookSuggestionService;
+
+    @BeforeEach
+    void setUp() {
+        when(bookRepository.streamSuggestions()).thenReturn(Stream.of(
+                new BookSuggestionDTO(1, "Harry Potter", "J. K. Rowling"),
+                new BookSuggestionDTO(2, "Hamlet", "William Shakespeare"),
+                new BookSuggestionDTO(3, "Crime and Punishment", "Fyodor Dostoevsky")));
+        bookSuggestionService.rebuild();
+    }
+
+    @Test
+    void suggest_ShouldMatchTitlePrefixIgnoringCase() {
+        List<BookSuggestionDTO> result = bookSuggestionService.suggest("HA", 10);
+
+        assertEquals(List.of(2, 1), result.stream().map(BookSuggestionDTO::getBookId).toList());
+    }
+
+    @Test
+    void suggest_ShouldMatchWordsOfTitleAndAuthor() {
+        assertEquals(1, bookSuggestionService.suggest("pott", 10).get(0).getBookId());
+        assertEquals(3, bookSuggestionService.suggest("dostoe", 10).get(0).getBookId());
+    }
+
+    @Test
+    void suggest_ShouldRespectLimit() {
+        assertEquals(1, bookSuggestionService.suggest("h", 1).size());
+        assertTrue(bookSuggestionService.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void put_ShouldReplacePreviousTermsOfBook() {
+        Book renamed = new Book("Macbeth", 1606, "William Shakespeare");
+        renamed.setBookId(2);
+
+        bookSuggestionService.put(renamed);
+
+        assertTrue(bookSuggestionService.suggest("haml", 10).isEmpty());
+        assertEquals("Macbeth", bookSuggestionService.suggest("mac", 10).get(0).getName());
+        assertEquals(3, bookSuggestionService.size());
+    }
+
+    @Test
+    void remove_ShouldDropBookFromIndex() {
+        bookSuggestionService.remove(1);
+
+        assertTrue(bookSuggestionService.suggest("harry", 10).isEmpty());
+        assertEquals(2, bookSuggestionService.size());
+    }
+
+    @Test
+    void normalize_ShouldStripDiacriticsAndCollapseWhitespace() {
+        assertEquals("les miserables", BookSuggestionService.normalize("  Les   Misérables "));
+    }
+}
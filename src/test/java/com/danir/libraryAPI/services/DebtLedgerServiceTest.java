@@ -0,0 +1,63 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.models.PersonDebt;
+import com.danir.libraryAPI.repositories.PersonDebtRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DebtLedgerServiceTest {
+
+    @Mock
+    private PersonDebtRepository personDebtRepository;
+
+    @InjectMocks
+    private DebtLedgerService debtLedgerService;
+
+    @Test
+    void balanceOf_ShouldReadLedgerRow() {
+        PersonDebt personDebt = new PersonDebt();
+        personDebt.setBalance(25.0);
+        when(personDebtRepository.findById(1)).thenReturn(Optional.of(personDebt));
+
+        assertEquals(25.0, debtLedgerService.balanceOf(1));
+    }
+
+    @Test
+    void balanceOf_ShouldBeZero_WhenPersonNeverOwed() {
+        when(personDebtRepository.findById(1)).thenReturn(Optional.empty());
+
+        assertEquals(0.0, debtLedgerService.balanceOf(1));
+    }
+
+    @Test
+    void refresh_ShouldRecalculateOnlyGivenPeople() {
+        debtLedgerService.refresh(Set.of(1, 2));
+        debtLedgerService.refresh(List.of());
+
+        verify(personDebtRepository, times(1)).refresh(eq(Set.of(1, 2)), any());
+        verify(personDebtRepository, never()).rebuild(any());
+    }
+
+    @Test
+    void refresh_ShouldLockPeopleBeforeSummingTheirLoans() {
+        debtLedgerService.refresh(Set.of(1, 2));
+
+        InOrder inOrder = inOrder(personDebtRepository);
+        inOrder.verify(personDebtRepository).lockPeople(Set.of(1, 2));
+        inOrder.verify(personDebtRepository).refresh(eq(Set.of(1, 2)), any());
+    }
+}
@@ -1,21 +1,28 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.dto.OverdueDigestRowDTO;
+import com.danir.libraryAPI.dto.OverdueNoticeDTO;
 import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.OutboxMessage;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.rabbitmq.NotificationMessage;
 import com.danir.libraryAPI.rabbitmq.NotificationPublisher;
 import com.danir.libraryAPI.repositories.BookRepository;
+import com.danir.libraryAPI.repositories.OutboxMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.amqp.AmqpException;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -28,11 +35,18 @@ public class NotificationServiceTest {
     @Mock
     private BookRepository bookRepository;
 
-    @InjectMocks
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
     private NotificationService notificationService;
 
+    @BeforeEach
+    void setUp() {
+        notificationService = new NotificationService(bookRepository, notificationPublisher, outboxMessageRepository, 2, false);
+    }
+
     @Test
-    void notifyBookReleased_ShouldSendNotification_WhenBookIsReserved() {
+    void notifyBookReleased_ShouldWriteOutboxMessage_WhenBookIsReserved() {
         // Arrange
         Person reservedBy = new Person();
         reservedBy.setEmail("test@example.com");
@@ -42,37 +56,114 @@ public class NotificationServiceTest {
         book.setName("Test Book");
         book.setReservedBy(reservedBy);
 
-        // Mocks
-        doNothing().when(notificationPublisher).sendNotification(any(NotificationMessage.class));        // Act
+        // Act
         notificationService.notifyBookReleased(book);
 
-        verify(notificationPublisher, times(1)).sendNotification(any(NotificationMessage.class));
+        verify(outboxMessageRepository, times(1)).save(ArgumentMatchers.<OutboxMessage>argThat(outboxMessage ->
+                outboxMessage.getToEmail().equals("test@example.com") && outboxMessage.getMessageId() != null));
+        // nothing is published before the release commits
+        verifyNoInteractions(notificationPublisher);
         assertNotNull(reservedBy.getEmail());
         assertNotNull(reservedBy.getFullName());
     }
 
     @Test
-    void sendOverdueNotifications_ShouldSendNotifications_WhenBooksAreOverdue() {
-        // Arrange
-        Person person = new Person();
-        person.setEmail("test@example.com");
-        person.setFullName("Test User");
+    void notifyBooksReleased_ShouldWriteOutboxMessages_ForReservedBooksOnly() {
+        Person reservedBy = new Person();
+        reservedBy.setEmail("test@example.com");
+        reservedBy.setFullName("Test User");
+
+        Book reservedBook = new Book();
+        reservedBook.setName("Reserved Book");
+        reservedBook.setReservedBy(reservedBy);
+
+        Book freeBook = new Book();
+        freeBook.setName("Free Book");
+
+        notificationService.notifyBooksReleased(List.of(reservedBook, freeBook));
 
-        Book overdueBook = new Book();
-        overdueBook.setName("Overdue Book");
-        overdueBook.setPerson(person);
+        verify(outboxMessageRepository, times(1)).saveAll(ArgumentMatchers.<List<OutboxMessage>>argThat(messages ->
+                messages.size() == 1 && messages.get(0).getToEmail().equals("test@example.com")));
+        verifyNoInteractions(notificationPublisher);
+    }
+
+    @Test
+    void sendOverdueNotifications_ShouldPublishKeysetPagesAsBatches() {
+        // Arrange: two full pages of 2 and a last partial page
+        when(bookRepository.findOverdueNoticesAfter(any(), eq(0), any()))
+                .thenReturn(List.of(notice(1), notice(2)));
+        when(bookRepository.findOverdueNoticesAfter(any(), eq(2), any()))
+                .thenReturn(List.of(notice(5), notice(9)));
+        when(bookRepository.findOverdueNoticesAfter(any(), eq(9), any()))
+                .thenReturn(List.of(notice(12)));
+
+        // Act
+        NotificationService.OverdueNotificationReport report = notificationService.sendOverdueNotifications();
+
+        assertEquals(5, report.published());
+        assertEquals(0, report.failed());
+        assertEquals(3, report.batches());
+        verify(notificationPublisher, times(2)).sendNotifications(argThat(messages -> messages.size() == 2));
+        verify(notificationPublisher, times(1)).sendNotifications(argThat(messages -> messages.size() == 1
+                && messages.get(0).getToEmail().equals("reader12@example.com")));
+        verify(notificationPublisher, never()).sendNotification(any(NotificationMessage.class));
+        verify(bookRepository, times(3)).findOverdueNoticesAfter(any(), anyInt(), any());
+    }
 
-        Page<Book> overdueBooksPage = new PageImpl<>(List.of(overdueBook));
+    @Test
+    void sendOverdueNotifications_ShouldCountFailedBatchesAndContinue() {
+        when(bookRepository.findOverdueNoticesAfter(any(), eq(0), any()))
+                .thenReturn(List.of(notice(1), notice(2)));
+        when(bookRepository.findOverdueNoticesAfter(any(), eq(2), any()))
+                .thenReturn(List.of(notice(3)));
+        doThrow(new AmqpException("nack")).doNothing()
+                .when(notificationPublisher).sendNotifications(anyList());
+
+        NotificationService.OverdueNotificationReport report = notificationService.sendOverdueNotifications();
+
+        assertEquals(1, report.published());
+        assertEquals(2, report.failed());
+        assertEquals(2, report.batches());
+    }
+
+    @Test
+    void sendOverdueNotifications_ShouldSendOneDigestPerBorrower_WhenDigestModeIsEnabled() {
+        NotificationService digestService = new NotificationService(bookRepository, notificationPublisher,
+                outboxMessageRepository, 2, true);
+        // Arrange: the books of reader 1 span two pages
+        when(bookRepository.findOverdueDigestRowsAfter(any(), eq(0), eq(0), any()))
+                .thenReturn(List.of(digestRow(1, 1, 15.0), digestRow(1, 2, 20.0)));
+        when(bookRepository.findOverdueDigestRowsAfter(any(), eq(1), eq(2), any()))
+                .thenReturn(List.of(digestRow(1, 3, 5.0), digestRow(2, 4, 10.0)));
+        when(bookRepository.findOverdueDigestRowsAfter(any(), eq(2), eq(4), any()))
+                .thenReturn(List.of(digestRow(3, 5, 0.0)));
+        List<List<NotificationMessage>> batches = new ArrayList<>();
+        doAnswer(invocation -> batches.add(new ArrayList<>(invocation.<List<NotificationMessage>>getArgument(0))))
+                .when(notificationPublisher).sendNotifications(anyList());
 
-        when(bookRepository.findOverdueBooks(any(), any()))
-                .thenReturn(overdueBooksPage)  // Первый вызов вернёт страницу с книгами
-                .thenReturn(Page.empty());
-        doNothing().when(notificationPublisher).sendNotification(any(NotificationMessage.class));
         // Act
-        notificationService.sendOverdueNotifications();
+        NotificationService.OverdueNotificationReport report = digestService.sendOverdueNotifications();
+
+        // Assert: 5 overdue books, 3 borrowers, 3 messages
+        assertEquals(3, report.published());
+        assertEquals(5, report.books());
+        assertEquals(2, report.batches());
+        assertEquals(List.of(2, 1), batches.stream().map(List::size).toList());
+
+        NotificationMessage firstDigest = batches.get(0).get(0);
+        assertEquals("reader1@example.com", firstDigest.getToEmail());
+        assertTrue(firstDigest.getMessage().contains("3 overdue books: 'Book 1', 'Book 2', 'Book 3'"));
+        assertTrue(firstDigest.getMessage().contains(String.format("%.2f euro", 40.0)));
+        assertEquals("reader3@example.com", batches.get(1).get(0).getToEmail());
+        verify(bookRepository, never()).findOverdueNoticesAfter(any(), anyInt(), any());
+    }
 
-        verify(bookRepository, atLeast(1)).findOverdueBooks(any(), any());
-        verify(notificationPublisher, times(1)).sendNotification(any(NotificationMessage.class));
+    private static OverdueNoticeDTO notice(int bookId) {
+        return new OverdueNoticeDTO(bookId, "Book " + bookId, "reader" + bookId + "@example.com", "Reader " + bookId);
     }
 
+    private static OverdueDigestRowDTO digestRow(int personId, int bookId, double debt) {
+        return new OverdueDigestRowDTO(personId, "reader" + personId + "@example.com", "Reader " + personId,
+                bookId, "Book " + bookId, debt);
+    }
 }
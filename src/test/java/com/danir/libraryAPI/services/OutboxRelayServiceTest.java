@@ -0,0 +1,79 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.models.OutboxMessage;
+import com.danir.libraryAPI.rabbitmq.NotificationPublisher;
+import com.danir.libraryAPI.repositories.OutboxMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayServiceTest {
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Mock
+    private NotificationPublisher notificationPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OutboxRelayService outboxRelayService;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelayService = new OutboxRelayService(outboxMessageRepository, notificationPublisher, transactionManager, 2);
+    }
+
+    @Test
+    void relay_ShouldPublishAndDeleteBatchesUntilOutboxIsEmpty() {
+        OutboxMessage first = new OutboxMessage("a@example.com", "Subject", "Text");
+        OutboxMessage second = new OutboxMessage("b@example.com", "Subject", "Text");
+        OutboxMessage third = new OutboxMessage("c@example.com", "Subject", "Text");
+        when(outboxMessageRepository.findBatchForRelay(any()))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+
+        int relayed = outboxRelayService.relay();
+
+        assertEquals(3, relayed);
+        verify(notificationPublisher).sendNotificationsWithIds(argThat(messages ->
+                messages.size() == 2 && messages.containsKey(first.getMessageId())));
+        verify(outboxMessageRepository).deleteAllInBatch(List.of(first, second));
+        verify(outboxMessageRepository).deleteAllInBatch(List.of(third));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void relay_ShouldKeepMessages_WhenPublishingFails() {
+        OutboxMessage message = new OutboxMessage("a@example.com", "Subject", "Text");
+        when(outboxMessageRepository.findBatchForRelay(any())).thenReturn(List.of(message));
+        doThrow(new AmqpException("broker down")).when(notificationPublisher)
+                .sendNotificationsWithIds(any());
+
+        int relayed = outboxRelayService.relay();
+
+        assertEquals(0, relayed);
+        verify(outboxMessageRepository, never()).deleteAllInBatch(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void relay_ShouldDoNothing_WhenOutboxIsEmpty() {
+        when(outboxMessageRepository.findBatchForRelay(any())).thenReturn(List.of());
+
+        assertEquals(0, outboxRelayService.relay());
+        verifyNoInteractions(notificationPublisher);
+    }
+}
@@ -0,0 +1,74 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.batch.JobReport;
+import com.danir.libraryAPI.batch.PartitionWork;
+import com.danir.libraryAPI.batch.PartitionedJobRunner;
+import com.danir.libraryAPI.repositories.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueRecalculationServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private PartitionedJobRunner jobRunner;
+
+    @Mock
+    private DebtLedgerService debtLedgerService;
+
+    @InjectMocks
+    private OverdueRecalculationService recalculationService;
+
+    @Test
+    void updateOverdueBooks_ShouldRecalculateEveryPartitionWithOneStatement() {
+        JobReport report = new JobReport(OverdueRecalculationService.JOB_NAME, false, List.of(), 0, 0, 0);
+        ArgumentCaptor<PartitionWork> work = ArgumentCaptor.forClass(PartitionWork.class);
+        when(jobRunner.run(eq(OverdueRecalculationService.JOB_NAME), work.capture())).thenReturn(report);
+        when(bookRepository.recalculateOverdueAndDebt(eq(101), eq(200), any(), any())).thenReturn(7);
+
+        assertSame(report, recalculationService.updateOverdueBooks());
+        OffsetDateTime runStartedAt = OffsetDateTime.now().minusHours(1);
+        assertEquals(7, work.getValue().process(101, 200, runStartedAt));
+
+        // the cutoff comes from the run, not from the time the partition is processed
+        verify(bookRepository).recalculateOverdueAndDebt(101, 200, runStartedAt, runStartedAt.minusDays(10));
+        verify(bookRepository, never()).findAll();
+        verify(debtLedgerService).rebuild();
+    }
+
+    @Test
+    void resumeInterruptedRun_ShouldRebuildLedger_WhenRunWasResumed() {
+        JobReport report = new JobReport(OverdueRecalculationService.JOB_NAME, true, List.of(), 0, 0, 0);
+        when(jobRunner.resume(eq(OverdueRecalculationService.JOB_NAME), any())).thenReturn(Optional.of(report));
+
+        recalculationService.resumeInterruptedRun();
+
+        verify(jobRunner, never()).run(any(), any());
+        verify(debtLedgerService).rebuild();
+    }
+
+    @Test
+    void resumeInterruptedRun_ShouldDoNothing_WhenNoRunWasInterrupted() {
+        when(jobRunner.resume(eq(OverdueRecalculationService.JOB_NAME), any())).thenReturn(Optional.empty());
+
+        recalculationService.resumeInterruptedRun();
+
+        verifyNoInteractions(debtLedgerService);
+    }
+}
@@ -1,20 +1,34 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.metrics.LibraryMetrics;
 import com.danir.libraryAPI.models.Book;
+import com.danir.libraryAPI.models.Payment;
 import com.danir.libraryAPI.models.Person;
+import com.danir.libraryAPI.models.PersonDebt;
+import com.danir.libraryAPI.payments.PaymentIntentResult;
+import com.danir.libraryAPI.payments.PaymentQuote;
+import com.danir.libraryAPI.payments.StripeGateway;
+import com.danir.libraryAPI.repositories.BookRepository;
 import com.danir.libraryAPI.repositories.PaymentRepository;
-import com.danir.libraryAPI.util.StripeConfig;
-import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -31,7 +45,19 @@ class PaymentServiceTest {
     private BookService bookService;
 
     @Mock
-    private StripeConfig stripeConfig;
+    private StripeGateway stripeGateway;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private LibraryMetrics libraryMetrics;
+
+    @Mock
+    private DebtLedgerService debtLedgerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private PaymentService paymentService;
@@ -41,54 +67,238 @@ class PaymentServiceTest {
 
     @BeforeEach
     void setUp() {
+        person = new Person();
+        person.setPersonId(3);
+        person.setFullName("John Doe");
+
         book = new Book();
+        book.setBookId(7);
         book.setName("Test Book");
         book.setBorrowedDate(OffsetDateTime.now().minusDays(5));
         book.setIsDebtPaid(false);
-
-        person = new Person();
-        person.setFullName("John Doe");
+        book.setPerson(person);
         person.setBookList(List.of(book));
-        Stripe.apiKey = "sk_test_dummy_key";
     }
 
     @Test
-    void testCreatePaymentIntentForBook() throws StripeException {
-        when(stripeConfig.getSecretKey()).thenReturn("sk_test_51QknoVPSnroF9soiVIiUry6UASUL5pZIm5nAFHaAIfA8yx8eemTRNOo8aobUWdYgj7sOKBvmnlpYavFwk4ozVGlV00fu6J7PYu");
-        when(stripeConfig.getCurrency()).thenReturn("EUR");
-        PaymentIntent mockIntent = mock(PaymentIntent.class);
-      //  when(mockIntent.getClientSecret()).thenReturn("pk_test_51QknoVPSnroF9soiSVPaoSNMeNAt7EMakzF8evMmXIvf5IDgctYv5jj73yGCkPk3Il5sq8npOOCPrzDv7ubyv9B900tO99WUBh");
+    void createPaymentIntentForBook_ShouldReuseIdempotencyKeyForSameDebt() throws StripeException {
+        when(paymentIntentMock.getId()).thenReturn("pi_1");
+        when(paymentIntentMock.getClientSecret()).thenReturn("pi_1_secret");
+        when(stripeGateway.createPaymentIntent(any())).thenReturn(paymentIntentMock);
+
+        PaymentIntentResult first = paymentService.createPaymentIntentForBook(book);
+        paymentService.createPaymentIntentForBook(book);
 
-        assertDoesNotThrow(() -> paymentService.createPaymentIntentForBook(book));
+        assertEquals("pi_1_secret", first.clientSecret());
+        assertEquals(5.0, first.amount());
+        ArgumentCaptor<PaymentQuote> quotes = ArgumentCaptor.forClass(PaymentQuote.class);
+        verify(stripeGateway, times(2)).createPaymentIntent(quotes.capture());
+        assertEquals(500, quotes.getValue().amountInCents());
+        assertEquals(Map.of("person_id", "3", "book_ids", "7"), quotes.getValue().metadata());
+        assertEquals(quotes.getAllValues().get(0).idempotencyKey(), quotes.getAllValues().get(1).idempotencyKey());
+        // no database connection is taken for creating an intent
+        verifyNoInteractions(transactionManager);
     }
 
-  //  @Test
-//    void testConfirmPayment() throws StripeException {
-//        // Мокаем метод, чтобы он не делал запросы в Stripe
-//
-//        try (MockedStatic<PaymentIntent> mockedPaymentIntent = mockStatic(PaymentIntent.class)) {
-//            mockedPaymentIntent.when(() -> PaymentIntent.retrieve("test_payment_id"))
-//                    .thenReturn(paymentIntentMock);
-//
-//            when(paymentIntentMock.getStatus()).thenReturn("succeeded");
-//
-//            paymentService.verifyPayment("test_payment_id");
-//
-//            // Убедись, что метод действительно вызван
-//            mockedPaymentIntent.verify(() -> PaymentIntent.retrieve("sk_test_dummy_key"));
-//        }
-//
-//        assertDoesNotThrow(() -> paymentService.confirmPayment("sk_test_dummy_key", person, book));
-//        assertTrue(book.getIsDebtPaid());
-//    }
+    @Test
+    void createPaymentIntentForBookAsync_ShouldCompleteWithCreatedIntent() {
+        when(paymentIntentMock.getId()).thenReturn("pi_1");
+        when(paymentIntentMock.getClientSecret()).thenReturn("pi_1_secret");
+        when(stripeGateway.createPaymentIntentAsync(any())).thenReturn(CompletableFuture.completedFuture(paymentIntentMock));
+
+        PaymentIntentResult result = paymentService.createPaymentIntentForBookAsync(book).join();
 
+        assertEquals("pi_1", result.paymentIntentId());
+        assertEquals(5.0, result.amount());
+    }
 
     @Test
-    void testScheduledTask_CheckIfBookReturnedAfterPayment() {
-        book.setPaymentDate(OffsetDateTime.now().minusHours(25));
-        when(bookService.findAll()).thenReturn(List.of(book));
+    void createPaymentIntentForBook_ShouldRejectPaidBook() throws StripeException {
+        book.setIsDebtPaid(true);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.createPaymentIntentForBook(book));
+        verify(stripeGateway, never()).createPaymentIntent(any());
+    }
+
+    @Test
+    void confirmPayment_ShouldVerifyRemotelyBeforeOpeningTransaction() throws StripeException {
+        succeededIntent("pi_1", "3", "7", 500L);
+        when(paymentRepository.existsByPaymentIntentId("pi_1")).thenReturn(false);
+        when(bookRepository.findUnpaidBooksOfPerson(3, List.of(7))).thenReturn(List.of(book));
+
+        paymentService.confirmPayment("pi_1", person, book);
+
+        InOrder inOrder = inOrder(stripeGateway, transactionManager);
+        inOrder.verify(stripeGateway).retrievePaymentIntent("pi_1");
+        inOrder.verify(transactionManager).getTransaction(any());
+        verify(paymentRepository).saveAndFlush(argThat((Payment payment) ->
+                "pi_1".equals(payment.getPaymentIntentId()) && payment.getAmount() == 5.0));
+        verify(bookService).save(book);
+        verify(debtLedgerService).refresh(List.of(person.getPersonId()));
+        assertTrue(book.getIsDebtPaid());
+    }
+
+    @Test
+    void createPaymentIntentForAllBooks_ShouldChargeLedgerBalance() throws StripeException {
+        PersonDebt personDebt = new PersonDebt();
+        personDebt.setPersonId(3);
+        personDebt.setBalance(42.0);
+        personDebt.setUpdatedAt(OffsetDateTime.now());
+        when(debtLedgerService.find(3)).thenReturn(Optional.of(personDebt));
+        when(paymentIntentMock.getId()).thenReturn("pi_2");
+        when(paymentIntentMock.getClientSecret()).thenReturn("pi_2_secret");
+        when(stripeGateway.createPaymentIntent(any())).thenReturn(paymentIntentMock);
+        when(bookRepository.findUnpaidBookIdsOfPerson(3)).thenReturn(List.of(7, 8));
+
+        PaymentIntentResult result = paymentService.createPaymentIntentForAllBooks(3);
+
+        assertEquals(42.0, result.amount());
+        verify(stripeGateway).createPaymentIntent(argThat(quote -> quote.amountInCents() == 4200
+                && quote.personId() == 3 && quote.bookIds().equals(List.of(7, 8))));
+        verify(bookRepository, never()).findUnpaidBooksOfPerson(anyInt(), anyCollection());
+    }
+
+    @Test
+    void createPaymentIntentForAllBooks_ShouldFail_WhenLedgerHasNoDebt() throws StripeException {
+        when(debtLedgerService.find(3)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> paymentService.createPaymentIntentForAllBooks(3));
+        verify(stripeGateway, never()).createPaymentIntent(any());
+    }
+
+    @Test
+    void confirmPaymentForAllBooks_ShouldRecordChargedAmountForCoveredBooks() throws StripeException {
+        book.setDebt(12.0);
+        Book second = new Book();
+        second.setBookId(8);
+        second.setName("Second Book");
+        second.setIsDebtPaid(false);
+        // accrued further since the intent was created, or never calculated
+        second.setDebt(null);
+        succeededIntent("pi_2", "3", "7,8", 4200L);
+        when(bookRepository.findUnpaidBooksOfPerson(3, List.of(7, 8))).thenReturn(List.of(book, second));
+
+        paymentService.confirmPaymentForAllBooks("pi_2", person);
+
+        verify(paymentRepository).saveAndFlush(argThat((Payment payment) -> payment.getAmount() == 42.0
+                && "pi_2".equals(payment.getPaymentIntentId())
+                && "Test Book,Second Book".equals(payment.getBookTitle())));
+        assertTrue(book.getIsDebtPaid());
+        assertTrue(second.getIsDebtPaid());
+        verify(debtLedgerService).refresh(List.of(3));
+    }
+
+    @Test
+    void confirmPaymentForAllBooks_ShouldOnlyMarkBooksTheIntentCovered() throws StripeException {
+        // book 9 was borrowed after the intent for books 7 and 8 was created, book 8 has been returned
+        succeededIntent("pi_2", "3", "7,8", 1200L);
+        when(bookRepository.findUnpaidBooksOfPerson(3, List.of(7, 8))).thenReturn(List.of(book));
+
+        paymentService.confirmPaymentForAllBooks("pi_2", person);
+
+        verify(paymentRepository).saveAndFlush(argThat((Payment payment) -> payment.getAmount() == 12.0
+                && "Test Book".equals(payment.getBookTitle())));
+        verify(bookService, times(1)).save(any(Book.class));
+        assertTrue(book.getIsDebtPaid());
+    }
+
+    @Test
+    void confirmPayment_ShouldNotRecordSameIntentTwice() throws StripeException {
+        succeededIntent("pi_1", "3", "7", 500L);
+        when(paymentRepository.existsByPaymentIntentId("pi_1")).thenReturn(true);
+
+        paymentService.confirmPayment("pi_1", person, book);
+
+        verify(paymentRepository, never()).saveAndFlush(any());
+        verify(bookService, never()).save(any());
+        assertFalse(book.getIsDebtPaid());
+    }
+
+    @Test
+    void confirmPayment_ShouldTreatConcurrentConfirmationAsDone() throws StripeException {
+        succeededIntent("pi_1", "3", "7", 500L);
+        // the other confirmation commits between our check and our insert
+        when(paymentRepository.existsByPaymentIntentId("pi_1")).thenReturn(false, true);
+        when(paymentRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("payment_intent_id"));
+
+        paymentService.confirmPayment("pi_1", person, book);
+
+        verify(bookService, never()).save(any());
+        verify(debtLedgerService, never()).refresh(any());
+    }
+
+    @Test
+    void confirmPayment_ShouldRecordPaymentButNotTouchBook_WhenLoanWasPaidMeanwhile() throws StripeException {
+        succeededIntent("pi_1", "3", "7", 500L);
+        when(bookRepository.findUnpaidBooksOfPerson(3, List.of(7))).thenReturn(List.of());
 
-        paymentService.checkIfBookReturnedAfterPayment();
+        paymentService.confirmPayment("pi_1", person, book);
+
+        verify(paymentRepository).saveAndFlush(argThat((Payment payment) -> "pi_1".equals(payment.getPaymentIntentId())));
+        verify(bookService, never()).save(any());
         assertFalse(book.getIsDebtPaid());
     }
+
+    @Test
+    void confirmPayment_ShouldFail_WhenIntentWasCreatedForAnotherPerson() throws StripeException {
+        when(paymentIntentMock.getStatus()).thenReturn("succeeded");
+        when(paymentIntentMock.getMetadata()).thenReturn(Map.of("person_id", "4", "book_ids", "7"));
+        when(stripeGateway.retrievePaymentIntent("pi_1")).thenReturn(paymentIntentMock);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.confirmPayment("pi_1", person, book));
+        verifyNoInteractions(transactionManager, paymentRepository);
+    }
+
+    @Test
+    void confirmPayment_ShouldFail_WhenIntentWasCreatedForAnotherBook() throws StripeException {
+        // a cheap book's intent can not mark another book as paid
+        succeededIntent("pi_1", "3", "8", 100L);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.confirmPayment("pi_1", person, book));
+        verifyNoInteractions(transactionManager, paymentRepository);
+        assertFalse(book.getIsDebtPaid());
+    }
+
+    @Test
+    void confirmPayment_ShouldFail_WhenAmountWasNotReceivedInFull() throws StripeException {
+        when(paymentIntentMock.getStatus()).thenReturn("succeeded");
+        when(paymentIntentMock.getMetadata()).thenReturn(Map.of("person_id", "3", "book_ids", "7"));
+        when(paymentIntentMock.getAmount()).thenReturn(500L);
+        when(paymentIntentMock.getAmountReceived()).thenReturn(100L);
+        when(stripeGateway.retrievePaymentIntent("pi_1")).thenReturn(paymentIntentMock);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.confirmPayment("pi_1", person, book));
+        verifyNoInteractions(transactionManager, paymentRepository);
+    }
+
+    @Test
+    void confirmPayment_ShouldFail_WhenIntentHasNotSucceeded() throws StripeException {
+        when(paymentIntentMock.getStatus()).thenReturn("requires_payment_method");
+        when(stripeGateway.retrievePaymentIntent("pi_1")).thenReturn(paymentIntentMock);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.confirmPayment("pi_1", person, book));
+        verifyNoInteractions(transactionManager, paymentRepository);
+    }
+
+    @Test
+    void testScheduledTask_CheckIfBookReturnedAfterPayment() {
+        when(bookRepository.reopenDebtsOfUnreturnedBooks(any())).thenReturn(3);
+
+        assertEquals(3, paymentService.checkIfBookReturnedAfterPayment());
+
+        ArgumentCaptor<OffsetDateTime> paidBefore = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(bookRepository).reopenDebtsOfUnreturnedBooks(paidBefore.capture());
+        assertTrue(paidBefore.getValue().isBefore(OffsetDateTime.now().minusHours(23)));
+        verify(libraryMetrics).recordDebtsReopened(3);
+        verify(transactionManager).commit(any());
+        verify(bookService, never()).findAll();
+    }
+
+    private void succeededIntent(String paymentIntentId, String personId, String bookIds, long amount) throws StripeException {
+        when(paymentIntentMock.getStatus()).thenReturn("succeeded");
+        when(paymentIntentMock.getMetadata()).thenReturn(Map.of("person_id", personId, "book_ids", bookIds));
+        when(paymentIntentMock.getAmount()).thenReturn(amount);
+        when(paymentIntentMock.getAmountReceived()).thenReturn(amount);
+        when(stripeGateway.retrievePaymentIntent(paymentIntentId)).thenReturn(paymentIntentMock);
+    }
 }
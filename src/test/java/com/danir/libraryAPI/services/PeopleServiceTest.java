@@ -1,5 +1,6 @@
 package com.danir.libraryAPI.services;
 
+import com.danir.libraryAPI.dto.CurrentUserDTO;
 import com.danir.libraryAPI.models.Person;
 import com.danir.libraryAPI.models.Role;
 import com.danir.libraryAPI.repositories.BookRepository;
@@ -17,6 +18,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -92,6 +94,19 @@ class PeopleServiceTest {
         assertThrows(UsernameNotFoundException.class, () -> peopleService.findByUsername("Unknown"));
     }
 
+    @Test
+    void findCurrentUser_ShouldReturnIdAndDetachedRoles() {
+        when(peopleRepository.findByFullNameIgnoreCase("Danir")).thenReturn(Optional.of(testPerson));
+
+        CurrentUserDTO currentUser = peopleService.findCurrentUser("Danir");
+
+        assertEquals(1, currentUser.getPersonId());
+        assertEquals("Danir", currentUser.getFullName());
+        assertEquals(Set.of(Role.ROLE_USER), currentUser.getRoles());
+        assertNotSame(testPerson.getRoles(), currentUser.getRoles());
+        assertFalse(currentUser.isAdmin());
+    }
+
     @Test
     void save_ShouldEncodePasswordAndSavePerson() {
         Person newPerson = new Person();
@@ -16,6 +16,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,5 +48,20 @@ public class PersonDetailsServiceTest {
         assertEquals("Danir", personDetails.getUsername());
     }
 
+    @Test
+    void updatePassword_ShouldStoreRehashedPassword() {
+        // Arrange
+        Person testPerson = new Person();
+        testPerson.setPersonId(7);
+        testPerson.setFullName("Danir");
+        testPerson.setPassword("$2a$04$legacyHash");
+
+        // Act
+        UserDetails result = personDetailsService.updatePassword(new PersonDetails(testPerson), "{bcrypt}$2a$10$newHash");
+
+        // Assert
+        verify(peopleRepository).updatePassword(7, "{bcrypt}$2a$10$newHash");
+        assertEquals("{bcrypt}$2a$10$newHash", result.getPassword());
+    }
 
 }
@@ -0,0 +1,59 @@
+package com.danir.libraryAPI.services;
+
+import com.danir.libraryAPI.repositories.ProcessedNotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedNotificationServiceTest {
+
+    @Mock
+    private ProcessedNotificationRepository processedNotificationRepository;
+
+    private ProcessedNotificationService processedNotificationService;
+
+    @BeforeEach
+    void setUp() {
+        processedNotificationService = new ProcessedNotificationService(processedNotificationRepository,
+                Duration.ofDays(7), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void claim_ShouldTakeOverOnlyClaimsOlderThanTimeout() {
+        when(processedNotificationRepository.claim(eq("a"), any(), any())).thenReturn(1);
+
+        assertTrue(processedNotificationService.claim("a"));
+
+        ArgumentCaptor<OffsetDateTime> now = ArgumentCaptor.forClass(OffsetDateTime.class);
+        ArgumentCaptor<OffsetDateTime> staleBefore = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(processedNotificationRepository).claim(eq("a"), now.capture(), staleBefore.capture());
+        assertEquals(now.getValue().minusMinutes(10), staleBefore.getValue());
+    }
+
+    @Test
+    void claim_ShouldFail_WhenIdIsSentOrBeingSent() {
+        when(processedNotificationRepository.claim(eq("a"), any(), any())).thenReturn(0);
+
+        assertFalse(processedNotificationService.claim("a"));
+    }
+
+    @Test
+    void markSent_ShouldSkipEmptyBatch() {
+        processedNotificationService.markSent(List.of());
+        processedNotificationService.markSent(List.of("a", "b"));
+
+        verify(processedNotificationRepository, times(1)).markSent(eq(List.of("a", "b")), any());
+    }
+}